@@ -0,0 +1,47 @@
+package com.expium.massdelete.remover;
+
+import com.expium.massdelete.Options;
+import com.expium.massdelete.StopReason;
+import com.expium.massdelete.stub.JiraStub;
+import com.expium.massdelete.ui.UI;
+
+import java.net.URI;
+
+/**
+ * Console UI that neither asks nor prints per issue, and does not exit when the removal stops.
+ *
+ * Copyright 2015-2016 Expium LLC
+ * http://expium.com/
+ */
+class BenchmarkUI extends UI {
+    private volatile StopReason stopReason;
+
+    static Options options(URI url) {
+        Options options = new Options();
+        options.url = url;
+        options.user = "admin";
+        options.password = "admin";
+        options.filters.add(JiraStub.FILTER_NAME);
+        options.filterCacheTtlMinutes = 0;
+        return options;
+    }
+
+    @Override
+    public boolean confirmRemoval(int total) {
+        return true;
+    }
+
+    @Override
+    public void removing(IssueRef issue) {
+    }
+
+    @Override
+    public void stopped(StopReason reason) {
+        close();
+        stopReason = reason;
+    }
+
+    StopReason getStopReason() {
+        return stopReason;
+    }
+}
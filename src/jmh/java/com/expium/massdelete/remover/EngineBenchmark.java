@@ -0,0 +1,81 @@
+package com.expium.massdelete.remover;
+
+import com.expium.massdelete.Engine;
+import com.expium.massdelete.Options;
+import com.expium.massdelete.StopReason;
+import com.expium.massdelete.stub.JiraStub;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deletions per second from the local stub by engine and number in flight, e.g.
+ * gradlew jmh -PjmhArgs="EngineBenchmark". With the stub answering after a fixed latency, the throughput is at most
+ * the number in flight divided by the latency; the engines differ in how close they get as that number grows.
+ *
+ * Copyright 2015-2016 Expium LLC
+ * http://expium.com/
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(EngineBenchmark.ISSUES)
+public class EngineBenchmark {
+    static final int ISSUES = 5_000;
+
+    @Param({ "THREADS", "VIRTUAL_THREADS", "ASYNC" })
+    public Engine engine;
+
+    @Param({ "1", "16", "128", "1024" })
+    public int inFlight;
+
+    @Param({ "5" })
+    public long latencyMillis;
+
+    private JiraStub stub;
+
+    @Setup(Level.Trial)
+    public void startStub() throws IOException {
+        stub = new JiraStub();
+        stub.setLatencyMillis(latencyMillis);
+    }
+
+    @Setup(Level.Invocation)
+    public void createIssues() {
+        stub.reset(ISSUES);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopStub() {
+        stub.close();
+    }
+
+    @Benchmark
+    public StopReason removeAll() {
+        Options options = BenchmarkUI.options(stub.getUrl());
+        options.maxIssuesPerSecond = 1_000_000;
+        options.engine = engine;
+        options.parallelism = inFlight;
+        // Keeps the engine busy while the next page is searched
+        options.queryBatchSize = Math.max(100, inFlight * 2);
+        options.prefetch = 2;
+        return RemoverBenchmark.remove(options);
+    }
+}
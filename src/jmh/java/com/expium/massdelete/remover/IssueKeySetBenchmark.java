@@ -0,0 +1,125 @@
+package com.expium.massdelete.remover;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link IssueKeySet} with the concurrent HashSet previously used for skipped keys. Run with
+ * {@code -prof gc} to compare memory: gc.alloc.rate.norm of the fill benchmarks is roughly the footprint of the
+ * filled set.
+ *
+ * Copyright 2015-2016 Expium LLC
+ * http://expium.com/
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class IssueKeySetBenchmark {
+    private static final int PROJECTS = 20;
+    private static final int LOOKUPS = 1 << 20;
+
+    @Param({ "1000000", "10000000" })
+    public int size;
+
+    @Param({ "HASH_SET", "ISSUE_KEY_SET" })
+    public String implementation;
+
+    private String[] keys;
+    private String[] lookups;
+    private KeySet filled;
+    private int next;
+
+    private interface KeySet {
+        boolean add(String key);
+
+        boolean contains(String key);
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        keys = new String[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = "PROJ" + (i % PROJECTS) + "-" + (i / PROJECTS + 1);
+        }
+
+        // Half of the lookups hit
+        Random random = new Random(42);
+        lookups = new String[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            int n = random.nextInt(size);
+            lookups[i] = "PROJ" + (n % PROJECTS) + "-" + (n / PROJECTS + 1 + (random.nextBoolean() ? 0 : size));
+        }
+
+        filled = fill();
+    }
+
+    private KeySet create() {
+        if ("HASH_SET".equals(implementation)) {
+            final Set<String> set = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+            return new KeySet() {
+                @Override
+                public boolean add(String key) {
+                    return set.add(key);
+                }
+
+                @Override
+                public boolean contains(String key) {
+                    return set.contains(key);
+                }
+            };
+        } else {
+            final IssueKeySet set = new IssueKeySet();
+            return new KeySet() {
+                @Override
+                public boolean add(String key) {
+                    return set.add(key);
+                }
+
+                @Override
+                public boolean contains(String key) {
+                    return set.contains(key);
+                }
+            };
+        }
+    }
+
+    private KeySet fill() {
+        KeySet set = create();
+        for (String key : keys) {
+            set.add(key);
+        }
+        return set;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Object fillSet() {
+        return fill();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public boolean contains() {
+        return filled.contains(lookups[next++ & (LOOKUPS - 1)]);
+    }
+}
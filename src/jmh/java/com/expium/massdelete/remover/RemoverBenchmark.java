@@ -0,0 +1,85 @@
+package com.expium.massdelete.remover;
+
+import com.expium.massdelete.Options;
+import com.expium.massdelete.StopReason;
+import com.expium.massdelete.stub.JiraStub;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to remove all issues from the local stub with {@link Remover#go()}, from connecting to completion.
+ *
+ * Copyright 2015-2016 Expium LLC
+ * http://expium.com/
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class RemoverBenchmark {
+    @Param({ "2000" })
+    public int issues;
+
+    @Param({ "0", "20" })
+    public long latencyMillis;
+
+    @Param({ "1", "8", "32" })
+    public int parallelism;
+
+    @Param({ "0", "2" })
+    public int prefetch;
+
+    // -p cloud=true to delete with bulk delete tasks
+    @Param({ "false" })
+    public boolean cloud;
+
+    private JiraStub stub;
+
+    @Setup(Level.Trial)
+    public void startStub() throws IOException {
+        stub = new JiraStub();
+        stub.setLatencyMillis(latencyMillis);
+        stub.setCloud(cloud);
+    }
+
+    @Setup(Level.Invocation)
+    public void createIssues() {
+        stub.reset(issues);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopStub() {
+        stub.close();
+    }
+
+    @Benchmark
+    public StopReason removeAll() {
+        Options options = BenchmarkUI.options(stub.getUrl());
+        options.maxIssuesPerSecond = 1_000_000;
+        options.parallelism = parallelism;
+        options.prefetch = prefetch;
+        return remove(options);
+    }
+
+    static StopReason remove(Options options) {
+        BenchmarkUI ui = new BenchmarkUI();
+        new Remover(ui, options).go();
+        return ui.getStopReason();
+    }
+}
@@ -0,0 +1,80 @@
+package com.expium.massdelete.remover;
+
+import com.expium.massdelete.Options;
+import com.expium.massdelete.StopReason;
+import com.expium.massdelete.stub.JiraStub;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Removal against a stub that throttles or fails a share of requests, showing what retries, backoff and the
+ * adaptive rate cost.
+ *
+ * Copyright 2015-2016 Expium LLC
+ * http://expium.com/
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class RetryBenchmark {
+    @Param({ "1000" })
+    public int issues;
+
+    @Param({ "0.01", "0.1" })
+    public double throttleRate;
+
+    @Param({ "0", "0.01" })
+    public double errorRate;
+
+    @Param({ "false", "true" })
+    public boolean adaptive;
+
+    private JiraStub stub;
+
+    @Setup(Level.Trial)
+    public void startStub() throws IOException {
+        stub = new JiraStub();
+        stub.setLatencyMillis(5);
+        stub.setThrottleRate(throttleRate);
+        stub.setErrorRate(errorRate);
+        stub.setRetryAfterSeconds(0);
+    }
+
+    @Setup(Level.Invocation)
+    public void createIssues() {
+        stub.reset(issues);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopStub() {
+        stub.close();
+    }
+
+    @Benchmark
+    public StopReason removeAll() {
+        Options options = BenchmarkUI.options(stub.getUrl());
+        options.maxIssuesPerSecond = 1_000;
+        options.parallelism = 16;
+        options.adaptive = adaptive;
+        options.skipErrors = true;
+        options.retryDelayMillis = 10;
+        return RemoverBenchmark.remove(options);
+    }
+}
@@ -0,0 +1,88 @@
+package com.expium.massdelete.remover;
+
+import com.expium.massdelete.Options;
+import com.expium.massdelete.stub.JiraStub;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Search response parsing alone, and the whole search request against the local stub, at various batch sizes.
+ *
+ * Copyright 2015-2016 Expium LLC
+ * http://expium.com/
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SearchBenchmark {
+    @Param({ "50", "100", "500", "1000" })
+    public int batchSize;
+
+    @Param({ "false", "true" })
+    public boolean verbose;
+
+    private JiraStub stub;
+    private JiraClientAdapter client;
+    private KeySearchParser parser;
+    private byte[] response;
+
+    @Setup
+    public void setUp() throws IOException {
+        stub = new JiraStub();
+        stub.reset(batchSize * 2);
+
+        Options options = BenchmarkUI.options(stub.getUrl());
+        options.verbose = verbose;
+        client = new JiraClientAdapter(new BenchmarkUI(), options);
+        parser = new KeySearchParser(false);
+
+        URL url = new URL(stub.getUrl() + "/rest/api/2/search?jql=" + URLEncoder.encode(JiraStub.FILTER_JQL,
+                "UTF-8") + "&maxResults=" + batchSize + "&fields=" + (verbose ? "summary" : "key"));
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (InputStream in = url.openStream()) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                body.write(buffer, 0, read);
+            }
+        }
+        response = body.toByteArray();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        client.close();
+        stub.close();
+    }
+
+    @Benchmark
+    public KeySearchResult parse() throws IOException {
+        return parser.parse(new ByteArrayInputStream(response));
+    }
+
+    @Benchmark
+    public KeySearchResult search() throws Exception {
+        return client.search(JiraStub.FILTER_JQL, batchSize, 0);
+    }
+}
@@ -0,0 +1,145 @@
+package com.expium.massdelete.remover;
+
+import com.expium.massdelete.Main;
+import com.expium.massdelete.stub.JiraStub;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time from starting the command line program, in a JVM of its own as the start scripts run it, until it deletes
+ * its first issue from the local stub. With cds=app, the class data sharing archive is created by a first run,
+ * like the start scripts do after installing.
+ *
+ * Copyright 2015-2016 Expium LLC
+ * http://expium.com/
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 1)
+@Measurement(iterations = 10)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class StartupBenchmark {
+    private static final long TIMEOUT_SECONDS = 60;
+
+    @Param({ "200" })
+    public int issues;
+
+    // off: no class data sharing, default: the archive of the JDK, app: one of the program's own classes as well
+    @Param({ "off", "default", "app" })
+    public String cds;
+
+    private JiraStub stub;
+    private Path workDir;
+    private Process process;
+
+    @Setup(Level.Trial)
+    public void startStub() throws IOException, InterruptedException {
+        stub = new JiraStub();
+        workDir = Files.createTempDirectory("startup-benchmark");
+        if ("app".equals(cds)) {
+            stub.reset(issues);
+            process = start();
+            waitForExit();
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void createIssues() {
+        stub.reset(issues);
+    }
+
+    @TearDown(Level.Invocation)
+    public void waitForExit() throws InterruptedException {
+        if (process == null) {
+            return;
+        }
+        try {
+            if (!process.waitFor(TIMEOUT_SECONDS, TimeUnit.SECONDS) || process.exitValue() != 0) {
+                throw new IllegalStateException("The removal did not complete, see " + workDir.resolve("logs"));
+            }
+        } finally {
+            process.destroyForcibly();
+            process = null;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stopStub() throws IOException {
+        stub.close();
+        deleteTree(workDir);
+    }
+
+    @Benchmark
+    public void firstDeletion() throws IOException, InterruptedException {
+        process = start();
+        if (!stub.awaitFirstDeletion(TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("Nothing deleted in " + TIMEOUT_SECONDS + " seconds");
+        }
+    }
+
+    private Process start() throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        switch (cds) {
+            case "off":
+                command.add("-Xshare:off");
+                break;
+            case "app":
+                // As in the start scripts
+                command.add("-XX:SharedArchiveFile=" + workDir.resolve("app.jsa"));
+                command.add("-XX:+AutoCreateSharedArchive");
+                break;
+            default:
+                break;
+        }
+        command.addAll(Arrays.asList("-Xlog:disable", "-cp", System.getProperty("java.class.path"),
+                Main.class.getName(), "--headless", "--url", stub.getUrl().toString(), "--user", "admin", "--jql",
+                JiraStub.FILTER_JQL, "--yes-expected-count", String.valueOf(issues)));
+        ProcessBuilder builder = new ProcessBuilder(command)
+                .directory(workDir.toFile())
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.DISCARD);
+        builder.environment().put("JIRA_PASSWORD", "admin");
+        return builder.start();
+    }
+
+    private static void deleteTree(Path root) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
@@ -0,0 +1,442 @@
+package com.expium.massdelete.stub;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.google.common.base.Charsets;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Local HTTP server answering the few JIRA REST resources the tool uses, backed by an in-memory list of issues.
+ * It poses as JIRA Server, or as Cloud with bulk delete tasks that complete at once. Latency, server errors and
+ * throttling (429 with Retry-After) can be injected, so that the search and delete path can be measured offline
+ * and reproducibly.
+ *
+ * Copyright 2015-2016 Expium LLC
+ * http://expium.com/
+ */
+public class JiraStub implements Closeable {
+    public static final long FILTER_ID = 10000;
+    public static final String FILTER_NAME = "Benchmark";
+    public static final String FILTER_JQL = "project = BENCH ORDER BY created ASC";
+    public static final String PROJECT = "BENCH";
+
+    private static final Pattern ID_BOUND = Pattern.compile("\\bid\\s*([<>])\\s*(\\d+)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern DESCENDING = Pattern.compile("ORDER BY id DESC", Pattern.CASE_INSENSITIVE);
+    private static final long FIRST_ID = 10_000;
+    // Room for a thousand connections opened at once
+    private static final int BACKLOG = 1024;
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    // Issue keys by id
+    private final TreeMap<Long, String> issues = new TreeMap<>();
+
+    // Ids removed by each bulk delete task, which completes at once
+    private final Map<String, List<Long>> bulkTasks = new HashMap<>();
+
+    // Replaced by each reset
+    private volatile CountDownLatch firstDeletion = new CountDownLatch(1);
+    private volatile long latencyMillis;
+    private volatile boolean cloud;
+    private volatile double errorRate;
+    private volatile double throttleRate;
+    private volatile int retryAfterSeconds;
+    private final Random random = new Random(42);
+
+    public JiraStub() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), BACKLOG);
+        server.setExecutor(executor);
+        server.createContext("/rest/api/2/search", new Handler() {
+            @Override
+            void handle(HttpExchange exchange, Map<String, String> query) throws IOException {
+                search(exchange, query);
+            }
+        });
+        server.createContext("/rest/api/2/issue/", new Handler() {
+            @Override
+            void handle(HttpExchange exchange, Map<String, String> query) throws IOException {
+                issue(exchange);
+            }
+        });
+        server.createContext("/rest/api/2/filter/favourite", new Handler() {
+            @Override
+            void handle(HttpExchange exchange, Map<String, String> query) throws IOException {
+                favouriteFilters(exchange);
+            }
+        });
+        server.createContext("/rest/api/2/filter/", new Handler() {
+            @Override
+            void handle(HttpExchange exchange, Map<String, String> query) throws IOException {
+                filter(exchange);
+            }
+        });
+        server.createContext("/rest/api/2/serverInfo", new Handler() {
+            @Override
+            void handle(HttpExchange exchange, Map<String, String> query) throws IOException {
+                respond(exchange, 200, ("{\"version\":\"7.0.0\",\"deploymentType\":\""
+                        + (cloud ? "Cloud" : "Server") + "\"}").getBytes(Charsets.UTF_8));
+            }
+        });
+        server.createContext("/rest/api/3/bulk/issues/delete", new Handler() {
+            @Override
+            void handle(HttpExchange exchange, Map<String, String> query) throws IOException {
+                bulkDelete(exchange);
+            }
+        });
+        server.createContext("/rest/api/3/bulk/queue/", new Handler() {
+            @Override
+            void handle(HttpExchange exchange, Map<String, String> query) throws IOException {
+                bulkTask(exchange);
+            }
+        });
+        server.createContext("/rest/api/2/myself", new Handler() {
+            @Override
+            void handle(HttpExchange exchange, Map<String, String> query) throws IOException {
+                respond(exchange, 200, "{\"name\":\"admin\",\"active\":true}".getBytes(Charsets.UTF_8));
+            }
+        });
+        server.start();
+    }
+
+    public URI getUrl() {
+        return URI.create("http://127.0.0.1:" + server.getAddress().getPort());
+    }
+
+    /**
+     * Replaces all issues with {@code count} new ones.
+     */
+    public synchronized void reset(int count) {
+        issues.clear();
+        firstDeletion = new CountDownLatch(1);
+        for (int i = 0; i < count; i++) {
+            issues.put(FIRST_ID + i, PROJECT + "-" + (i + 1));
+        }
+    }
+
+    /**
+     * Waits until an issue is deleted, one by one or in bulk, since the last reset.
+     *
+     * @return false if none was deleted in time
+     */
+    public boolean awaitFirstDeletion(long timeout, TimeUnit unit) throws InterruptedException {
+        return firstDeletion.await(timeout, unit);
+    }
+
+    public synchronized int getIssueCount() {
+        return issues.size();
+    }
+
+    /**
+     * Makes the stub claim to be JIRA Cloud, which has bulk delete.
+     */
+    public void setCloud(boolean cloud) {
+        this.cloud = cloud;
+    }
+
+    public void setLatencyMillis(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    /**
+     * Share of requests failing with 500, between 0 and 1.
+     */
+    public void setErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+    }
+
+    /**
+     * Share of requests rejected with 429, between 0 and 1.
+     */
+    public void setThrottleRate(double throttleRate) {
+        this.throttleRate = throttleRate;
+    }
+
+    public void setRetryAfterSeconds(int retryAfterSeconds) {
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private abstract class Handler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            try {
+                if (latencyMillis > 0) {
+                    Thread.sleep(latencyMillis);
+                }
+                double roll;
+                synchronized (random) {
+                    roll = random.nextDouble();
+                }
+                if (roll < throttleRate) {
+                    exchange.getResponseHeaders().add("Retry-After", String.valueOf(retryAfterSeconds));
+                    respond(exchange, 429, null);
+                } else if (roll < throttleRate + errorRate) {
+                    respond(exchange, 500, null);
+                } else {
+                    handle(exchange, parseQuery(exchange.getRequestURI().getRawQuery()));
+                }
+            } catch (InterruptedException e) {
+                respond(exchange, 503, null);
+            } finally {
+                exchange.close();
+            }
+        }
+
+        abstract void handle(HttpExchange exchange, Map<String, String> query) throws IOException;
+    }
+
+    private void search(HttpExchange exchange, Map<String, String> query) throws IOException {
+        String jql = query.containsKey("jql") ? query.get("jql") : "";
+        int startAt = query.containsKey("startAt") ? Integer.parseInt(query.get("startAt")) : 0;
+        int maxResults = query.containsKey("maxResults") ? Integer.parseInt(query.get("maxResults")) : 50;
+        boolean withSummary = String.valueOf(query.get("fields")).contains("summary");
+
+        List<Map.Entry<Long, String>> page = new ArrayList<>();
+        int total;
+        synchronized (this) {
+            NavigableMap<Long, String> matching = issues;
+            Matcher bound = ID_BOUND.matcher(jql);
+            if (bound.find()) {
+                long id = Long.parseLong(bound.group(2));
+                matching = bound.group(1).equals(">") ? issues.tailMap(id, false) : issues.headMap(id, false);
+            }
+            if (DESCENDING.matcher(jql).find()) {
+                matching = matching.descendingMap();
+            }
+            total = matching.size();
+            int index = 0;
+            for (Map.Entry<Long, String> issue : matching.entrySet()) {
+                if (index >= startAt + maxResults) {
+                    break;
+                }
+                if (index++ >= startAt) {
+                    page.add(issue);
+                }
+            }
+        }
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (JsonGenerator json = jsonFactory.createGenerator(body)) {
+            json.writeStartObject();
+            json.writeStringField("expand", "names,schema");
+            json.writeNumberField("startAt", startAt);
+            json.writeNumberField("maxResults", maxResults);
+            json.writeNumberField("total", total);
+            json.writeArrayFieldStart("issues");
+            for (Map.Entry<Long, String> issue : page) {
+                json.writeStartObject();
+                json.writeStringField("expand", "operations,versionedRepresentations,editmeta,changelog");
+                json.writeStringField("id", String.valueOf(issue.getKey()));
+                json.writeStringField("self", getUrl() + "/rest/api/2/issue/" + issue.getKey());
+                json.writeStringField("key", issue.getValue());
+                json.writeObjectFieldStart("fields");
+                if (withSummary) {
+                    json.writeStringField("summary", "Benchmark issue " + issue.getValue());
+                }
+                json.writeEndObject();
+                json.writeEndObject();
+            }
+            json.writeEndArray();
+            json.writeEndObject();
+        }
+        respond(exchange, 200, body.toByteArray());
+    }
+
+    private void issue(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        String idOrKey = path.substring(path.lastIndexOf('/') + 1);
+        if ("GET".equals(exchange.getRequestMethod())) {
+            Map.Entry<Long, String> found = null;
+            synchronized (this) {
+                for (Map.Entry<Long, String> issue : issues.entrySet()) {
+                    if (issue.getValue().equals(idOrKey) || String.valueOf(issue.getKey()).equals(idOrKey)) {
+                        found = issue;
+                        break;
+                    }
+                }
+            }
+            respond(exchange, found == null ? 404 : 200, found == null ? null : ("{\"id\":\"" + found.getKey()
+                    + "\",\"key\":\"" + found.getValue() + "\",\"fields\":{}}").getBytes(Charsets.UTF_8));
+            return;
+        }
+        if (!"DELETE".equals(exchange.getRequestMethod())) {
+            respond(exchange, 405, null);
+            return;
+        }
+        boolean removed;
+        synchronized (this) {
+            removed = issues.values().remove(idOrKey)
+                    || (isNumber(idOrKey) && issues.remove(Long.parseLong(idOrKey)) != null);
+        }
+        if (removed) {
+            firstDeletion.countDown();
+        }
+        respond(exchange, removed ? 204 : 404, null);
+    }
+
+    private void bulkDelete(HttpExchange exchange) throws IOException {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            respond(exchange, 405, null);
+            return;
+        }
+        List<Long> removed = new ArrayList<>();
+        try (JsonParser json = jsonFactory.createParser(exchange.getRequestBody())) {
+            while (json.nextToken() != null) {
+                if (json.getCurrentToken() == JsonToken.FIELD_NAME
+                        && "selectedIssueIdsOrKeys".equals(json.getCurrentName())) {
+                    json.nextToken();
+                    while (json.nextToken() == JsonToken.VALUE_STRING) {
+                        String id = json.getText();
+                        synchronized (this) {
+                            if (isNumber(id) && issues.remove(Long.parseLong(id)) != null) {
+                                removed.add(Long.parseLong(id));
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        String taskId;
+        synchronized (bulkTasks) {
+            taskId = String.valueOf(bulkTasks.size() + 1);
+            bulkTasks.put(taskId, removed);
+        }
+        if (!removed.isEmpty()) {
+            firstDeletion.countDown();
+        }
+        respond(exchange, 201, ("{\"taskId\":\"" + taskId + "\"}").getBytes(Charsets.UTF_8));
+    }
+
+    private void bulkTask(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        List<Long> removed;
+        synchronized (bulkTasks) {
+            removed = bulkTasks.get(path.substring(path.lastIndexOf('/') + 1));
+        }
+        if (removed == null) {
+            respond(exchange, 404, null);
+            return;
+        }
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (JsonGenerator json = jsonFactory.createGenerator(body)) {
+            json.writeStartObject();
+            json.writeStringField("status", "COMPLETE");
+            json.writeNumberField("progressPercent", 100);
+            json.writeArrayFieldStart("processedAccessibleIssues");
+            for (long id : removed) {
+                json.writeNumber(id);
+            }
+            json.writeEndArray();
+            json.writeObjectFieldStart("failedAccessibleIssues");
+            json.writeEndObject();
+            json.writeEndObject();
+        }
+        respond(exchange, 200, body.toByteArray());
+    }
+
+    private void favouriteFilters(HttpExchange exchange) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (JsonGenerator json = jsonFactory.createGenerator(body)) {
+            json.writeStartArray();
+            writeFilter(json);
+            json.writeEndArray();
+        }
+        respond(exchange, 200, body.toByteArray());
+    }
+
+    private void filter(HttpExchange exchange) throws IOException {
+        if (!exchange.getRequestURI().getPath().endsWith("/" + FILTER_ID)) {
+            respond(exchange, 404, null);
+            return;
+        }
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (JsonGenerator json = jsonFactory.createGenerator(body)) {
+            writeFilter(json);
+        }
+        respond(exchange, 200, body.toByteArray());
+    }
+
+    private void writeFilter(JsonGenerator json) throws IOException {
+        String self = getUrl() + "/rest/api/2/filter/" + FILTER_ID;
+        json.writeStartObject();
+        json.writeStringField("self", self);
+        json.writeStringField("id", String.valueOf(FILTER_ID));
+        json.writeStringField("name", FILTER_NAME);
+        json.writeStringField("description", "");
+        json.writeObjectFieldStart("owner");
+        json.writeStringField("self", getUrl() + "/rest/api/2/user?username=admin");
+        json.writeStringField("key", "admin");
+        json.writeStringField("name", "admin");
+        json.writeStringField("displayName", "Administrator");
+        json.writeBooleanField("active", true);
+        json.writeEndObject();
+        json.writeStringField("jql", FILTER_JQL);
+        json.writeStringField("viewUrl", getUrl() + "/issues/?filter=" + FILTER_ID);
+        json.writeStringField("searchUrl", getUrl() + "/rest/api/2/search?jql=" + FILTER_JQL.replace(" ", "+"));
+        json.writeBooleanField("favourite", true);
+        json.writeEndObject();
+    }
+
+    private static boolean isNumber(String value) {
+        return !value.isEmpty() && value.matches("\\d+");
+    }
+
+    private static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+        if (body == null) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        exchange.getResponseHeaders().add("Content-Type", "application/json;charset=UTF-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static Map<String, String> parseQuery(String query) throws UnsupportedEncodingException {
+        Map<String, String> params = new HashMap<>();
+        if (query == null) {
+            return params;
+        }
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                params.put(URLDecoder.decode(pair.substring(0, eq), "UTF-8"),
+                        URLDecoder.decode(pair.substring(eq + 1), "UTF-8"));
+            }
+        }
+        return params;
+    }
+}
@@ -0,0 +1,20 @@
+package com.expium.massdelete;
+
+/**
+ * Copyright 2015-2016 Expium LLC
+ * http://expium.com/
+ */
+public enum DeleteMode {
+    /**
+     * Bulk deletes where JIRA supports them (Cloud), one issue at a time otherwise.
+     */
+    AUTO,
+    /**
+     * One request for each issue.
+     */
+    PER_ISSUE,
+    /**
+     * Bulk delete tasks of JIRA Cloud, without checking that JIRA supports them.
+     */
+    BULK
+}
@@ -0,0 +1,22 @@
+package com.expium.massdelete;
+
+/**
+ * How deletions run concurrently.
+ *
+ * Copyright 2015-2016 Expium LLC
+ * http://expium.com/
+ */
+public enum Engine {
+    /**
+     * A fixed pool of platform threads, each blocking on its own request.
+     */
+    THREADS,
+    /**
+     * A virtual thread for each deletion, blocking on its request.
+     */
+    VIRTUAL_THREADS,
+    /**
+     * No thread blocks on a request, completion is handled by callbacks of the HTTP client.
+     */
+    ASYNC
+}
@@ -1,7 +1,11 @@
 package com.expium.massdelete;
 
+import ch.qos.logback.classic.AsyncAppender;
 import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.ConsoleAppender;
 import org.slf4j.LoggerFactory;
 
 /**
@@ -9,10 +13,64 @@ import org.slf4j.LoggerFactory;
  * http://expium.com/
  */
 public class LoggerConfiguration {
-    public static void configure(boolean verbose) {
+    private static final int FILE_QUEUE_SIZE = 8192;
+    private static final long FLUSH_MILLIS = 2_000;
+
+    private static volatile AsyncAppender asyncFile;
+
+    /**
+     * @param toStandardError true to leave standard output to other than the log
+     */
+    public static void configure(boolean verbose, boolean toStandardError) {
         Logger root = (Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME);
         root.setLevel(verbose ? Level.DEBUG : Level.INFO);
 
         ((Logger) LoggerFactory.getLogger("com.atlassian.jira")).setLevel(Level.INFO);
+
+        Appender<ILoggingEvent> console = root.getAppender("STDOUT");
+        if (toStandardError && console instanceof ConsoleAppender) {
+            console.stop();
+            ((ConsoleAppender<ILoggingEvent>) console).setTarget("System.err");
+            console.start();
+        }
+
+        // The log file is written on a thread of its own, so that logging does not wait for the disk
+        Appender<ILoggingEvent> file = root.getAppender("FILE");
+        if (file != null && asyncFile == null) {
+            AsyncAppender async = new AsyncAppender();
+            async.setContext(root.getLoggerContext());
+            async.setName("ASYNC_FILE");
+            async.setQueueSize(FILE_QUEUE_SIZE);
+            // Keep every event, by default those below WARN are dropped when the queue is nearly full
+            async.setDiscardingThreshold(0);
+            async.addAppender(file);
+            async.start();
+
+            Logger fileOnly = (Logger) LoggerFactory.getLogger("FILE_ONLY");
+            root.detachAppender(file);
+            root.addAppender(async);
+            fileOnly.detachAppender(file);
+            fileOnly.addAppender(async);
+            asyncFile = async;
+        }
+    }
+
+    /**
+     * Waits, for a while at most, until the events logged so far are handed to the log file, before exiting.
+     */
+    public static void flush() {
+        AsyncAppender async = asyncFile;
+        if (async == null) {
+            return;
+        }
+        long deadline = System.currentTimeMillis() + FLUSH_MILLIS;
+        while (async.getNumberOfElementsInQueue() > 0 && System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
     }
 }
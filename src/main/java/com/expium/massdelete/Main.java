@@ -1,9 +1,12 @@
 package com.expium.massdelete;
 
+import com.expium.massdelete.remover.JiraClientAdapter;
 import com.expium.massdelete.remover.Remover;
+import com.expium.massdelete.ui.HeadlessUI;
 import com.expium.massdelete.ui.UI;
 
 import java.util.Properties;
+import java.util.concurrent.Future;
 
 /**
  * Copyright 2015-2016 Expium LLC
@@ -11,11 +14,17 @@ import java.util.Properties;
  */
 public class Main {
     public static void main(String[] args) {
-        UI ui = new UI();
+        Options options = UI.parseOptions(args);
+        UI ui = options.headless ? new HeadlessUI() : new UI();
         ui.showWelcome(readProperties());
-        Options options = ui.getOptions(args);
-        LoggerConfiguration.configure(options.verbose);
-        new Remover(ui, options).go();
+        LoggerConfiguration.configure(options.verbose, options.headless);
+        // Loading the classes of the REST client takes a while, so it's done while the password is typed
+        Future<JiraClientAdapter> client = options.shardStatus ? null
+                : JiraClientAdapter.createInBackground(ui, options);
+        if (!ui.setUp(options)) {
+            System.exit(StopReason.ERROR.getExitCode());
+        }
+        System.exit(new Remover(ui, options, client).go().getExitCode());
     }
 
     private static BuildProperties readProperties() {
@@ -2,7 +2,10 @@ package com.expium.massdelete;
 
 import org.kohsuke.args4j.Option;
 
+import java.io.File;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Copyright 2015-2016 Expium LLC
@@ -19,12 +22,33 @@ public class Options {
     public String user;
 
     @Option(name = "-f", aliases = {
-            "--filter" }, usage = "Name of filter in JIRA (must be in favorites)", required = true)
-    public String filter;
+            "--filter" }, usage = "Name of filter in JIRA (must be in favorites), may be given several times to remove the issues of all of them at once")
+    public List<String> filters = new ArrayList<>();
+
+    @Option(name = "--filter-id", usage = "Id of filter in JIRA (need not be in favorites), may be given several times")
+    public List<Long> filterIds = new ArrayList<>();
+
+    @Option(name = "--jql", usage = "JQL query to remove the issues of, instead of a filter, may be given several times")
+    public List<String> jqls = new ArrayList<>();
+
+    @Option(name = "--filter-cache-ttl", usage = "Minutes to use the query of a filter found by name without looking it up again, 0 to always look it up")
+    public int filterCacheTtlMinutes = 10;
+
+    @Option(name = "--job-file", usage = "File listing filters and queries whose issues to remove at once, one per line as \"filter: <name>\", \"filter-id: <id>\" or \"jql: <query>\"")
+    public File jobFile;
 
     // Not a CLI option, we don't want password remembered in shell history or whatever
     public String password;
 
+    @Option(name = "--password-file", usage = "Read the JIRA password from the first line of this file instead of asking for it, or from the JIRA_PASSWORD environment variable when set")
+    public File passwordFile;
+
+    @Option(name = "--yes-expected-count", metaVar = "N", usage = "Remove without asking if the filters match exactly this many issues, stop otherwise")
+    public Integer yesExpectedCount;
+
+    @Option(name = "--headless", usage = "Never ask: take the password from --password-file or JIRA_PASSWORD, require --yes-expected-count, print progress as JSON lines and log to standard error")
+    public boolean headless;
+
     @Option(name = "-v", aliases = { "--verbose" }, usage = "Enable verbose output")
     public boolean verbose;
 
@@ -32,9 +56,95 @@ public class Options {
             "--max-per-second" }, usage = "Max issues to delete per second, may be fractional")
     public double maxIssuesPerSecond = 1_000;
 
+    @Option(name = "-a", aliases = {
+            "--adaptive" }, usage = "Adjust the rate and parallelism to server response, up to --max-per-second and --parallelism")
+    public boolean adaptive;
+
+    @Option(name = "-t", aliases = {
+            "--target-latency" }, usage = "In adaptive mode, stop speeding up when 95% of deletions take longer than this many milliseconds")
+    public long targetLatencyMillis = 1_000;
+
+    @Option(name = "--pause-latency", usage = "Probe JIRA every few seconds, slow down as it takes longer to respond and pause while it takes longer than this many milliseconds, 0 to not probe")
+    public long pauseLatencyMillis = 0;
+
+    @Option(name = "--rate-schedule", usage = "File listing the max issues per second and parallelism allowed at times of the day, one per line as \"HH:MM-HH:MM <rate> [<parallelism>]\", a rate of 0 pausing")
+    public File rateSchedule;
+
     @Option(name = "-b", aliases = { "--batch-size" }, usage = "How many issues to query at a time")
     public int queryBatchSize = 100;
 
+    @Option(name = "-p", aliases = {
+            "--parallelism" }, usage = "How many issues to delete concurrently (requests in flight at a time)")
+    public int parallelism = 1;
+
+    @Option(name = "--engine", usage = "How deletions run concurrently: a thread each, a virtual thread each (scales to a higher parallelism) or asynchronously")
+    public Engine engine = Engine.THREADS;
+
+    @Option(name = "--delete-mode", usage = "How to delete issues: in bulk where JIRA supports it (Cloud), one at a time, or in bulk regardless")
+    public DeleteMode deleteMode = DeleteMode.AUTO;
+
+    @Option(name = "-g", aliases = {
+            "--paging" }, usage = "How to page through the issues: by issue id (ignores the order of the filter) or by offset (requires the filter to define a stable order)")
+    public PagingMode paging = PagingMode.ID_ASC;
+
+    @Option(name = "-r", aliases = {
+            "--prefetch" }, usage = "How many pages of issues to search for ahead while the current one is being deleted")
+    public int prefetch = 0;
+
+    @Option(name = "--connections", usage = "Size of the HTTP connection pool, 0 for the parallelism plus 2")
+    public int connections = 0;
+
+    @Option(name = "--connect-timeout", usage = "Milliseconds to wait for a connection to JIRA to be established")
+    public long connectTimeoutMillis = 5_000;
+
+    @Option(name = "--socket-timeout", usage = "Milliseconds to wait for JIRA to send data before giving up on a request")
+    public long socketTimeoutMillis = 20_000;
+
+    @Option(name = "--keep-alive", usage = "Seconds to reuse an HTTP connection for before opening a new one")
+    public long keepAliveSeconds = 60;
+
+    @Option(name = "--session", usage = "Log in once and send the session cookie instead of the password with each request (JIRA Server)")
+    public boolean session;
+
+    @Option(name = "--retries", usage = "How many times to retry a request that failed due to network or server overload")
+    public int retries = 3;
+
+    @Option(name = "--retry-delay", usage = "Milliseconds to wait before the first retry, doubling with each next one (randomized)")
+    public long retryDelayMillis = 1_000;
+
+    @Option(name = "--retry-budget", usage = "Stop retrying when retries exceed this percentage of successful requests")
+    public int retryBudgetPercent = 10;
+
+    @Option(name = "--journal", usage = "Record progress in this file, so that running again with the same file continues where the removal stopped")
+    public File journal;
+
+    @Option(name = "--archive", usage = "Before deleting each issue, append it as returned by JIRA to this gzip compressed file, one JSON object per line")
+    public File archive;
+
+    @Option(name = "--archive-fields", metaVar = "LIST", usage = "Comma separated fields of the issues to archive, *all for all of them")
+    public String archiveFields = "summary,issuetype,created,updated,project,status";
+
+    @Option(name = "--metrics-address", metaVar = "[HOST:]PORT", usage = "Serve metrics in Prometheus format at http://HOST:PORT/metrics, HOST being localhost when omitted")
+    public String metricsAddress;
+
+    @Option(name = "--metrics-summary", usage = "Write a JSON summary of request latencies, retries and counts to this file when the program stops")
+    public File metricsSummary;
+
+    @Option(name = "--dry-run", usage = "Do not remove anything, only write the keys of the issues to this file and estimate how long removing them would take")
+    public File dryRun;
+
+    @Option(name = "--snapshot", usage = "Do not remove anything, only write the ids of the issues to this file, to remove them later with --from-snapshot")
+    public File snapshot;
+
+    @Option(name = "--from-snapshot", usage = "Remove the issues listed in a file written by --snapshot, without searching, instead of those of a filter")
+    public File fromSnapshot;
+
+    @Option(name = "--shards", usage = "With --from-snapshot, split the removal into this many shards taken by the processes sharing the snapshot's directory, 0 for no sharding")
+    public int shards;
+
+    @Option(name = "--shard-status", usage = "With --from-snapshot, only show the progress of the shards of all processes")
+    public boolean shardStatus;
+
     @Option(name = "-s", aliases = {
             "--skip-errors" }, usage = "When set, the program will skip issues it was unable to delete and try to continue.")
     public boolean skipErrors;
@@ -0,0 +1,20 @@
+package com.expium.massdelete;
+
+/**
+ * Copyright 2015-2016 Expium LLC
+ * http://expium.com/
+ */
+public enum PagingMode {
+    /**
+     * Pages by issue id in ascending order, ignoring the order defined by the filter.
+     */
+    ID_ASC,
+    /**
+     * Pages by issue id in descending order, ignoring the order defined by the filter.
+     */
+    ID_DESC,
+    /**
+     * Pages by offset in the order defined by the filter, which must be stable.
+     */
+    OFFSET
+}
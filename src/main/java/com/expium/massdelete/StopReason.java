@@ -5,12 +5,30 @@ package com.expium.massdelete;
  * http://expium.com/
  */
 public enum StopReason {
-    NO_CONNECTION_TO_JIRA,
-    FILTER_NOT_FOUND,
-    USER_DID_NOT_CONFIRM_REMOVAL,
-    ERROR,
-    NO_MATCHING_ISSUES,
-    COMPLETED,
-    NOTHING_REMOVED_IN_BATCH,
-    ISSUE_SEARCH_FAILED
+    NO_CONNECTION_TO_JIRA(1),
+    FILTER_NOT_FOUND(2),
+    USER_DID_NOT_CONFIRM_REMOVAL(0),
+    UNEXPECTED_ISSUE_COUNT(4),
+    ERROR(-1),
+    INTERRUPTED(-1),
+    NO_MATCHING_ISSUES(0),
+    COMPLETED(0),
+    NOTHING_REMOVED_IN_BATCH(0),
+    ISSUE_SEARCH_FAILED(3),
+    DRY_RUN_COMPLETED(0),
+    SNAPSHOT_TAKEN(0),
+    STATUS_SHOWN(0);
+
+    private final int exitCode;
+
+    StopReason(int exitCode) {
+        this.exitCode = exitCode;
+    }
+
+    /**
+     * @return status for the process to exit with when run from the command line
+     */
+    public int getExitCode() {
+        return exitCode;
+    }
 }
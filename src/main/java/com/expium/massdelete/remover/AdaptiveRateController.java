@@ -0,0 +1,139 @@
+package com.expium.massdelete.remover;
+
+import com.google.common.util.concurrent.RateLimiter;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adjusts the delete rate and the number of deletions in flight to what the server handles well (additive
+ * increase, multiplicative decrease).
+ * <p>
+ * Once per interval, if the 95th percentile of delete latency is below the target, either the rate is raised by a
+ * fixed step or, when deletions cannot keep up with the current rate anyway, one more deletion is allowed in
+ * flight. Whenever the server signals overload (429 or 503 responses, Retry-After headers or timeouts), both
+ * are halved, at most once per interval so that a burst of failures from requests already in flight does not
+ * collapse the rate. The configured maximum rate and parallelism are never exceeded, nor the lower ceiling the
+ * server load may call for.
+ *
+ * Copyright 2015-2016 Expium LLC
+ * http://expium.com/
+ */
+class AdaptiveRateController implements RequestListener {
+    private static final long INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final double INITIAL_RATE = 10;
+    private static final double MIN_RATE = 0.1;
+    private static final double DECREASE_FACTOR = 0.5;
+    // Below this share of the current rate, deletions are not keeping up and the rate is not the bottleneck
+    private static final double SATURATION = 0.8;
+
+    private final RateLimiter rateLimiter;
+    private final DeleteEngine workers;
+    private final double increaseStep;
+    private final long targetLatencyNanos;
+
+    private final LatencyWindow latencies = new LatencyWindow(500);
+    private double maxRate;
+    private int maxLimit;
+    private long intervalStart = System.nanoTime();
+    private int completedInInterval;
+    private boolean decreasedInInterval;
+
+    AdaptiveRateController(RateLimiter rateLimiter, DeleteEngine workers, double maxRate,
+            long targetLatencyMillis) {
+        this.rateLimiter = rateLimiter;
+        this.workers = workers;
+        this.maxRate = maxRate;
+        this.maxLimit = workers.getParallelism();
+        this.increaseStep = Math.max(1, maxRate / 100);
+        this.targetLatencyNanos = TimeUnit.MILLISECONDS.toNanos(targetLatencyMillis);
+
+        rateLimiter.setRate(Math.min(maxRate, INITIAL_RATE));
+        workers.setLimit(1);
+    }
+
+    @Override
+    public synchronized void succeeded(Operation operation, long latencyNanos) {
+        if (operation != Operation.DELETE) {
+            return;
+        }
+        latencies.add(latencyNanos);
+        completedInInterval++;
+        adjust();
+    }
+
+    @Override
+    public synchronized void failed(Operation operation, long latencyNanos, Exception e) {
+        if (!isOverload(e)) {
+            return;
+        }
+        if (!decreasedInInterval) {
+            rateLimiter.setRate(Math.max(MIN_RATE, rateLimiter.getRate() * DECREASE_FACTOR));
+            workers.setLimit(workers.getLimit() / 2);
+            decreasedInInterval = true;
+        }
+        adjust();
+    }
+
+    @Override
+    public void retrying(Operation operation, long delayMillis, Exception e) {
+    }
+
+    private void adjust() {
+        long now = System.nanoTime();
+        long elapsed = now - intervalStart;
+        if (elapsed < INTERVAL_NANOS) {
+            return;
+        }
+
+        if (!decreasedInInterval && !latencies.isEmpty() && latencies.percentile(95) < targetLatencyNanos) {
+            double rate = rateLimiter.getRate();
+            double throughput = completedInInterval * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+            if (throughput >= rate * SATURATION || workers.getLimit() >= maxLimit) {
+                rateLimiter.setRate(Math.min(maxRate, rate + increaseStep));
+            } else {
+                workers.setLimit(workers.getLimit() + 1);
+            }
+        }
+
+        intervalStart = now;
+        completedInInterval = 0;
+        decreasedInInterval = false;
+    }
+
+    /**
+     * Keeps the rate and the deletions in flight below the given ones from now on, lowering them if above.
+     */
+    synchronized void setCeiling(double rate, int limit) {
+        maxRate = rate;
+        maxLimit = limit;
+        if (rateLimiter.getRate() > rate) {
+            rateLimiter.setRate(rate);
+        }
+        if (workers.getLimit() > limit) {
+            workers.setLimit(limit);
+        }
+    }
+
+    private static boolean isOverload(Exception e) {
+        int status = JiraErrors.statusCode(e);
+        if (status == 429 || status == 503) {
+            return true;
+        }
+        if (e instanceof JiraResponseException && ((JiraResponseException) e).getRetryAfterMillis() >= 0) {
+            return true;
+        }
+        return JiraErrors.isTimeout(e);
+    }
+
+    synchronized double getRate() {
+        return rateLimiter.getRate();
+    }
+
+    synchronized long getLatencyMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(latencies.percentile(95));
+    }
+
+    int getLimit() {
+        return workers.getLimit();
+    }
+}
@@ -0,0 +1,53 @@
+package com.expium.massdelete.remover;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+
+import java.util.Map;
+
+/**
+ * Runs issue deletions without a thread for each. Requests complete on the callback threads of the HTTP client,
+ * which hand the outcome to the listener, so the limit on deletions in flight is the only bound.
+ *
+ * Copyright 2015-2016 Expium LLC
+ * http://expium.com/
+ */
+class AsyncDeleteEngine extends DeleteEngine {
+    AsyncDeleteEngine(JiraClientAdapter client, int parallelism) {
+        super(client, parallelism);
+    }
+
+    @Override
+    protected void start(final IssueRef issue, final Listener listener, final Map<String, String> context) {
+        boolean ifExists = listener instanceof IfExistsListener;
+        Futures.addCallback(client.deleteAsync(issue, ifExists), new FutureCallback<Boolean>() {
+            @Override
+            public void onSuccess(Boolean found) {
+                setContext(context);
+                try {
+                    if (found) {
+                        listener.removed(issue);
+                    } else {
+                        ((IfExistsListener) listener).notFound(issue);
+                    }
+                } finally {
+                    finished();
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                setContext(context);
+                try {
+                    listener.failed(issue, t instanceof Exception ? (Exception) t : new RuntimeException(t));
+                } finally {
+                    finished();
+                }
+            }
+        });
+    }
+
+    @Override
+    public void close() {
+    }
+}
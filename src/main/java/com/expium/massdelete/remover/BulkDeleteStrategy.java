@@ -0,0 +1,106 @@
+package com.expium.massdelete.remover;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Deletes issues with the bulk delete API of JIRA Cloud, up to 1000 in a task, waiting for each task to finish.
+ * The task reports which issues it removed and which it failed to. Issues it reports neither for were not found
+ * or not accessible; those that no longer exist, such as subtasks removed with their parent, count as removed.
+ * When the task cannot be followed to its end, each issue is looked up, as the task may have removed it anyway.
+ *
+ * Copyright 2015-2016 Expium LLC
+ * http://expium.com/
+ */
+class BulkDeleteStrategy implements DeleteStrategy {
+    static final int MAX_ISSUES_PER_TASK = 1000;
+
+    private final RemovalListener ui;
+    private final JiraClientAdapter client;
+    private final Throttle throttle;
+
+    BulkDeleteStrategy(RemovalListener ui, JiraClientAdapter client, Throttle throttle) {
+        this.ui = ui;
+        this.client = client;
+        this.throttle = throttle;
+    }
+
+    @Override
+    public int delete(List<IssueRef> issues, Listener listener) throws InterruptedException {
+        int started = 0;
+        while (started < issues.size() && !listener.isStopping()) {
+            List<IssueRef> batch = issues.subList(started, Math.min(issues.size(),
+                    started + MAX_ISSUES_PER_TASK));
+            started += batch.size();
+
+            throttle.acquire(batch.size());
+            List<IssueRef> deleting = new ArrayList<>(batch.size());
+            for (IssueRef issue : batch) {
+                ui.removing(issue);
+                if (listener.deleting(issue)) {
+                    deleting.add(issue);
+                }
+            }
+            if (deleting.isEmpty()) {
+                continue;
+            }
+
+            BulkDeleteTask task;
+            try {
+                task = client.bulkDelete(deleting);
+            } catch (InterruptedException e) {
+                throw e;
+            } catch (Exception e) {
+                // Already logged and retried by the client
+                for (IssueRef issue : deleting) {
+                    verify(issue, listener, e);
+                }
+                continue;
+            }
+            if (!"COMPLETE".equals(task.getStatus())) {
+                ui.warn("The bulk delete task ended as {}", task.getStatus());
+            }
+            for (IssueRef issue : deleting) {
+                report(task, issue, listener);
+            }
+        }
+        return started;
+    }
+
+    private void report(BulkDeleteTask task, IssueRef issue, Listener listener) throws InterruptedException {
+        if (task.isRemoved(issue.getId())) {
+            listener.removed(issue);
+            return;
+        }
+        String error = task.getError(issue.getId());
+        if (error != null) {
+            ui.warn("Unable to delete issue {}: {}", issue.getKey(), error);
+            listener.failed(issue, new IllegalStateException(error));
+            return;
+        }
+        if (verify(issue, listener, new IllegalStateException("Not deleted by the bulk delete task"))) {
+            ui.warn("Issue {} was not deleted, it may not be accessible", issue.getKey());
+        }
+    }
+
+    /**
+     * Counts the issue as removed if it no longer exists, otherwise as failed.
+     *
+     * @param cause why it failed if it still exists
+     * @return true if it still exists
+     */
+    private boolean verify(IssueRef issue, Listener listener, Exception cause) throws InterruptedException {
+        try {
+            if (client.exists(issue)) {
+                listener.failed(issue, cause);
+                return true;
+            }
+            listener.removed(issue);
+        } catch (InterruptedException e) {
+            throw e;
+        } catch (Exception e) {
+            listener.failed(issue, e);
+        }
+        return false;
+    }
+}
@@ -0,0 +1,136 @@
+package com.expium.massdelete.remover;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Progress of a bulk delete task of JIRA Cloud, as read from /rest/api/3/bulk/queue/{taskId}. Issues neither
+ * processed nor failed were not found or not accessible to the user.
+ *
+ * Copyright 2015-2016 Expium LLC
+ * http://expium.com/
+ */
+class BulkDeleteTask {
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private final String status;
+    private final Set<Long> processed;
+    private final Map<Long, String> failed;
+
+    private BulkDeleteTask(String status, Set<Long> processed, Map<Long, String> failed) {
+        this.status = status;
+        this.processed = processed;
+        this.failed = failed;
+    }
+
+    /**
+     * @return true once the task completed, failed or was cancelled
+     */
+    boolean isFinished() {
+        return !"ENQUEUED".equals(status) && !"RUNNING".equals(status) && !"CANCEL_REQUESTED".equals(status);
+    }
+
+    String getStatus() {
+        return status;
+    }
+
+    boolean isRemoved(long id) {
+        return processed.contains(id);
+    }
+
+    /**
+     * @return null unless deleting the issue failed
+     */
+    String getError(long id) {
+        return failed.get(id);
+    }
+
+    /**
+     * {@code {"taskId":"10641"}}
+     */
+    static String parseTaskId(InputStream in) throws IOException {
+        try (JsonParser parser = JSON.createParser(in)) {
+            expect(parser.nextToken(), JsonToken.START_OBJECT);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                if ("taskId".equals(field)) {
+                    return parser.getText();
+                }
+                parser.skipChildren();
+            }
+        }
+        throw new IOException("No task id in the bulk delete response");
+    }
+
+    /**
+     * {@code {"status":"COMPLETE","processedAccessibleIssues":[10001],"failedAccessibleIssues":{"10002":["..."]},
+     * ..}}
+     */
+    static BulkDeleteTask parse(InputStream in) throws IOException {
+        String status = null;
+        Set<Long> processed = new HashSet<>();
+        Map<Long, String> failed = new HashMap<>();
+        try (JsonParser parser = JSON.createParser(in)) {
+            expect(parser.nextToken(), JsonToken.START_OBJECT);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                if ("status".equals(field)) {
+                    status = parser.getText();
+                } else if ("processedAccessibleIssues".equals(field)) {
+                    expect(parser.getCurrentToken(), JsonToken.START_ARRAY);
+                    while (parser.nextToken() != JsonToken.END_ARRAY) {
+                        processed.add(Long.parseLong(parser.getText()));
+                    }
+                } else if ("failedAccessibleIssues".equals(field)) {
+                    expect(parser.getCurrentToken(), JsonToken.START_OBJECT);
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        long id = Long.parseLong(parser.getCurrentName());
+                        parser.nextToken();
+                        failed.put(id, parseErrors(parser));
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        if (status == null) {
+            throw new IOException("No status in the bulk delete task");
+        }
+        return new BulkDeleteTask(status, processed, failed);
+    }
+
+    /**
+     * @return the error messages of an issue joined, from an array of them
+     */
+    private static String parseErrors(JsonParser parser) throws IOException {
+        if (parser.getCurrentToken() != JsonToken.START_ARRAY) {
+            String error = parser.getText();
+            parser.skipChildren();
+            return error;
+        }
+        StringBuilder errors = new StringBuilder();
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (errors.length() > 0) {
+                errors.append("; ");
+            }
+            errors.append(parser.getText());
+        }
+        return errors.toString();
+    }
+
+    private static void expect(JsonToken actual, JsonToken expected) throws IOException {
+        if (actual != expected) {
+            throw new IOException("Unexpected " + actual + " in the bulk delete response, expected " + expected);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.expium.massdelete.remover;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Tracks which pages have been fully processed when paging by issue id, and records the last id of the latest
+ * page before which nothing is pending anymore. Pages complete out of order when deleting concurrently or
+ * prefetching, so the cursor only moves over an unbroken run of completed pages.
+ *
+ * Copyright 2015-2016 Expium LLC
+ * http://expium.com/
+ */
+class Checkpoints {
+    private final Journal journal;
+    private final IssueArchive archive;
+    private final Deque<SearchPage> pages = new ArrayDeque<>();
+
+    /**
+     * @param archive null unless archiving, in which case checkpoints are only recorded once it is synced
+     */
+    Checkpoints(Journal journal, IssueArchive archive) {
+        this.journal = journal;
+        this.archive = archive;
+    }
+
+    synchronized void started(SearchPage page) {
+        pages.add(page);
+        advance();
+    }
+
+    synchronized void processed(SearchPage page) {
+        page.processedOne();
+        advance();
+    }
+
+    private void advance() {
+        SearchPage completed = null;
+        while (!pages.isEmpty() && pages.peek().isProcessed()) {
+            completed = pages.poll();
+        }
+        if (completed != null && completed.getLastId() != -1) {
+            final long id = completed.getLastId();
+            if (archive == null) {
+                journal.checkpoint(id);
+            } else {
+                archive.sync(new Runnable() {
+                    @Override
+                    public void run() {
+                        journal.checkpoint(id);
+                    }
+                });
+            }
+        }
+    }
+}
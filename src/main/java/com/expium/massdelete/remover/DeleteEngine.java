@@ -0,0 +1,139 @@
+package com.expium.massdelete.remover;
+
+import com.expium.massdelete.Engine;
+import org.slf4j.MDC;
+
+import java.io.Closeable;
+import java.util.Map;
+
+/**
+ * Runs issue deletions concurrently, with at most a given number in flight. That number may be limited further
+ * while running. How the deletions run is up to the subclass, which must call {@link #finished} when each one is
+ * done.
+ *
+ * Copyright 2015-2016 Expium LLC
+ * http://expium.com/
+ */
+abstract class DeleteEngine implements Closeable {
+    interface Listener {
+        void removed(IssueRef issue);
+
+        void failed(IssueRef issue, Exception e);
+    }
+
+    /**
+     * Told of issues that do not exist (any more), which are then not failures.
+     */
+    interface IfExistsListener extends Listener {
+        void notFound(IssueRef issue);
+    }
+
+    protected final JiraClientAdapter client;
+    private final int parallelism;
+
+    private int limit;
+    private int inFlight;
+
+    DeleteEngine(JiraClientAdapter client, int parallelism) {
+        this.client = client;
+        this.parallelism = parallelism;
+        this.limit = parallelism;
+    }
+
+    static DeleteEngine create(Engine engine, JiraClientAdapter client, int parallelism) {
+        switch (engine) {
+        case VIRTUAL_THREADS:
+            return new VirtualThreadEngine(client, parallelism);
+        case ASYNC:
+            return new AsyncDeleteEngine(client, parallelism);
+        default:
+            return new DeleteWorkerPool(client, parallelism);
+        }
+    }
+
+    /**
+     * Blocks until a deletion may start, then starts it. The listener is called with the logging context of the
+     * calling thread.
+     */
+    void submit(IssueRef issue, Listener listener) throws InterruptedException {
+        Map<String, String> context = MDC.getCopyOfContextMap();
+        synchronized (this) {
+            while (inFlight >= limit) {
+                wait();
+            }
+            inFlight++;
+        }
+        try {
+            start(issue, listener, context);
+        } catch (RuntimeException e) {
+            finished();
+            throw e;
+        }
+    }
+
+    /**
+     * Deletes the issue without waiting for it, calls the listener and then {@link #finished}.
+     *
+     * @param context logging context to call the listener with, null if empty
+     */
+    protected abstract void start(IssueRef issue, Listener listener, Map<String, String> context);
+
+    protected synchronized void finished() {
+        inFlight--;
+        notifyAll();
+    }
+
+    /**
+     * Blocks until all submitted deletions have completed.
+     */
+    synchronized void awaitIdle() throws InterruptedException {
+        while (inFlight > 0) {
+            wait();
+        }
+    }
+
+    int getParallelism() {
+        return parallelism;
+    }
+
+    synchronized int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Limits deletions in flight to fewer than the parallelism. Deletions already in flight are not affected.
+     */
+    synchronized void setLimit(int limit) {
+        this.limit = Math.max(1, Math.min(parallelism, limit));
+        notifyAll();
+    }
+
+    protected static void setContext(Map<String, String> context) {
+        if (context == null) {
+            MDC.clear();
+        } else {
+            MDC.setContextMap(context);
+        }
+    }
+
+    /**
+     * Deletes the issue on the calling thread, for engines that block on each request.
+     */
+    protected void deleteBlocking(IssueRef issue, Listener listener, Map<String, String> context) {
+        setContext(context);
+        try {
+            if (!(listener instanceof IfExistsListener)) {
+                client.delete(issue);
+                listener.removed(issue);
+            } else if (client.deleteIfExists(issue)) {
+                listener.removed(issue);
+            } else {
+                ((IfExistsListener) listener).notFound(issue);
+            }
+        } catch (Exception e) {
+            listener.failed(issue, e);
+        } finally {
+            finished();
+        }
+    }
+}
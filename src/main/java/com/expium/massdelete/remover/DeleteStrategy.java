@@ -0,0 +1,34 @@
+package com.expium.massdelete.remover;
+
+import java.util.List;
+
+/**
+ * How the issues of a page get deleted: one request each, or a few requests for all of them where JIRA supports
+ * that. Either way the outcome is reported for each issue.
+ *
+ * Copyright 2015-2016 Expium LLC
+ * http://expium.com/
+ */
+interface DeleteStrategy {
+    interface Listener extends DeleteEngine.Listener {
+        /**
+         * Called right before deleting the issue.
+         *
+         * @return false if the issue is not to be deleted after all, having been reported failed
+         */
+        boolean deleting(IssueRef issue) throws InterruptedException;
+
+        /**
+         * @return true if the rest of the issues are not to be deleted, after a failure
+         */
+        boolean isStopping();
+    }
+
+    /**
+     * Deletes the issues within the rate limit, and calls the listener for each once it is removed or failed,
+     * possibly from other threads and after returning.
+     *
+     * @return how many of the issues, from the first, the listener is called for
+     */
+    int delete(List<IssueRef> issues, Listener listener) throws InterruptedException;
+}
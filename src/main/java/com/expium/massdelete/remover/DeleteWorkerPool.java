@@ -0,0 +1,39 @@
+package com.expium.massdelete.remover;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs issue deletions on a fixed number of worker threads. Each worker blocks on its own request,
+ * so the number of busy workers is also the number of delete requests in flight.
+ *
+ * Copyright 2015-2016 Expium LLC
+ * http://expium.com/
+ */
+class DeleteWorkerPool extends DeleteEngine {
+    private final ExecutorService executor;
+
+    DeleteWorkerPool(JiraClientAdapter client, int parallelism) {
+        super(client, parallelism);
+        this.executor = Executors.newFixedThreadPool(parallelism,
+                new ThreadFactoryBuilder().setNameFormat("delete-%d").setDaemon(true).build());
+    }
+
+    @Override
+    protected void start(final IssueRef issue, final Listener listener, final Map<String, String> context) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                deleteBlocking(issue, listener, context);
+            }
+        });
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,164 @@
+package com.expium.massdelete.remover;
+
+import com.expium.massdelete.Options;
+import com.google.common.base.Charsets;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pages through all issues the jobs would remove, without removing any, writes their keys to a file and estimates
+ * how long removing them would take.
+ * <p>
+ * Deleting is estimated from the latency of getting a random sample of the issues one at a time. A delete costs
+ * the server more than that, and it slows down when many run at once, so the projections for high parallelism
+ * are a lower bound.
+ *
+ * Copyright 2015-2016 Expium LLC
+ * http://expium.com/
+ */
+class DryRun {
+    private static final int PROBES = 20;
+    private static final int[] PARALLELISM = { 1, 2, 4, 8, 16, 32, 64 };
+    private static final double[] RATES = { 1, 5, 10, 50, 100 };
+
+    private final RemovalListener ui;
+    private final Options options;
+    private final JiraClientAdapter client;
+    private final Random random = new Random();
+
+    private final IssueScan scan;
+    private final IssueKeySet seen = new IssueKeySet();
+    private final List<IssueRef> sample = new ArrayList<>();
+    private int issues;
+
+    DryRun(RemovalListener ui, Options options, JiraClientAdapter client) {
+        this.ui = ui;
+        this.options = options;
+        this.client = client;
+        this.scan = new IssueScan(client, options);
+    }
+
+    /**
+     * @return false if a search failed
+     */
+    boolean run(List<RemovalJob> jobs) throws IOException {
+        try (final Writer keys = new BufferedWriter(new OutputStreamWriter(
+                Files.newOutputStream(options.dryRun.toPath()), Charsets.UTF_8))) {
+            IssueScan.Listener listener = new IssueScan.Listener() {
+                @Override
+                public void found(IssueRef issue) throws IOException {
+                    if (seen.add(issue.getKey())) {
+                        keys.write(issue.getKey());
+                        keys.write('\n');
+                        sample(issue);
+                    }
+                }
+            };
+            for (RemovalJob job : jobs) {
+                if (!scan.run(job.getJql(), listener)) {
+                    return false;
+                }
+            }
+        }
+        ui.info("Found {} issues, their keys are in {}.", issues, options.dryRun);
+        if (issues == 0) {
+            return true;
+        }
+
+        double searchSeconds = scan.getNanos() / 1e9;
+        ui.searchMeasured(scan.getPages(), scan.getPages() / searchSeconds, scan.getBytes() / scan.getPages(),
+                issues / searchSeconds);
+
+        long[] latencies = probe();
+        if (latencies.length == 0) {
+            ui.warn("Unable to get any of the sampled issues, cannot estimate the time to remove them.");
+            return true;
+        }
+        Arrays.sort(latencies);
+        double latencySeconds = latencies[latencies.length / 2] / 1e9;
+        ui.deleteLatencyMeasured(latencies.length, TimeUnit.NANOSECONDS.toMillis(latencies[latencies.length / 2]),
+                TimeUnit.NANOSECONDS.toMillis(latencies[latencies.length * 9 / 10]));
+
+        project(searchSeconds, latencySeconds);
+        return true;
+    }
+
+    /**
+     * Keeps a uniformly random sample of all issues seen (reservoir sampling).
+     */
+    private void sample(IssueRef issue) {
+        issues++;
+        if (sample.size() < PROBES) {
+            sample.add(issue);
+        } else {
+            int index = random.nextInt(issues);
+            if (index < PROBES) {
+                sample.set(index, issue);
+            }
+        }
+    }
+
+    /**
+     * @return latencies of the requests that succeeded, in nanoseconds
+     */
+    private long[] probe() {
+        long[] latencies = new long[sample.size()];
+        int succeeded = 0;
+        for (IssueRef issue : sample) {
+            long start = System.nanoTime();
+            try {
+                client.getIssue(issue);
+                latencies[succeeded++] = System.nanoTime() - start;
+            } catch (Exception e) {
+                // Already logged
+            }
+        }
+        return Arrays.copyOf(latencies, succeeded);
+    }
+
+    /**
+     * Deleting runs at the rate limit or at the parallelism divided by the latency, whichever is lower. Searching
+     * happens in between pages, unless prefetching overlaps it with deleting.
+     */
+    private void project(double searchSeconds, double latencySeconds) {
+        TreeSet<Integer> parallelism = new TreeSet<>();
+        for (int p : PARALLELISM) {
+            parallelism.add(p);
+        }
+        parallelism.add(options.parallelism);
+        TreeSet<Double> rates = new TreeSet<>();
+        for (double rate : RATES) {
+            rates.add(rate);
+        }
+        rates.add(options.maxIssuesPerSecond);
+
+        int[] parallelismValues = new int[parallelism.size()];
+        double[] rateValues = new double[rates.size()];
+        long[][] seconds = new long[parallelismValues.length][rateValues.length];
+        int i = 0;
+        for (int p : parallelism) {
+            parallelismValues[i] = p;
+            int j = 0;
+            for (double rate : rates) {
+                rateValues[j] = rate;
+                double deleteSeconds = issues / Math.min(rate, p / latencySeconds);
+                double total = options.prefetch > 0 ? Math.max(deleteSeconds, searchSeconds)
+                        : deleteSeconds + searchSeconds;
+                seconds[i][j] = (long) Math.ceil(total);
+                j++;
+            }
+            i++;
+        }
+        ui.projection(issues, parallelismValues, rateValues, seconds);
+    }
+}
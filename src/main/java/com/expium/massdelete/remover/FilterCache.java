@@ -0,0 +1,121 @@
+package com.expium.massdelete.remover;
+
+import com.google.common.base.Charsets;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * Remembers the id and JQL of filters found by name among favorites, so that repeated runs need not download
+ * all favorite filters. Entries are per JIRA and user, and older ones are only used to look the filter up by id.
+ * A time to live of 0 disables the cache. Failing to read or write the cache only makes it look empty.
+ *
+ * Copyright 2015-2016 Expium LLC
+ * http://expium.com/
+ */
+class FilterCache {
+    private static final Path DEFAULT_FILE = Paths.get(System.getProperty("user.home"), ".mass-delete-for-jira",
+            "filters.properties");
+
+    private final Path file;
+    private final String scope;
+    private final long ttlMillis;
+    private final Properties entries = new Properties();
+
+    static class Entry {
+        private final long id;
+        private final String jql;
+        private final boolean fresh;
+
+        Entry(long id, String jql, boolean fresh) {
+            this.id = id;
+            this.jql = jql;
+            this.fresh = fresh;
+        }
+
+        long getId() {
+            return id;
+        }
+
+        String getJql() {
+            return jql;
+        }
+
+        /**
+         * @return true if the JQL may be used without asking JIRA again
+         */
+        boolean isFresh() {
+            return fresh;
+        }
+    }
+
+    FilterCache(URI url, String user, long ttlMillis) {
+        this(DEFAULT_FILE, url, user, ttlMillis);
+    }
+
+    FilterCache(Path file, URI url, String user, long ttlMillis) {
+        this.file = file;
+        this.scope = url + " " + user + " ";
+        this.ttlMillis = ttlMillis;
+        if (Files.exists(file)) {
+            try (Reader reader = Files.newBufferedReader(file, Charsets.UTF_8)) {
+                entries.load(reader);
+            } catch (IOException | IllegalArgumentException e) {
+                entries.clear();
+            }
+        }
+    }
+
+    /**
+     * @return null if the filter was not found before, or the cache is disabled
+     */
+    Entry get(String name) {
+        if (ttlMillis <= 0) {
+            return null;
+        }
+        String value = entries.getProperty(key(name));
+        if (value == null) {
+            return null;
+        }
+        // "<id> <time resolved> <jql>"
+        String[] parts = value.split(" ", 3);
+        if (parts.length < 3) {
+            return null;
+        }
+        try {
+            long id = Long.parseLong(parts[0]);
+            long age = System.currentTimeMillis() - Long.parseLong(parts[1]);
+            return new Entry(id, parts[2], age >= 0 && age < ttlMillis);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    void put(String name, long id, String jql) {
+        if (ttlMillis <= 0) {
+            return;
+        }
+        entries.setProperty(key(name), id + " " + System.currentTimeMillis() + " " + jql);
+        try {
+            Files.createDirectories(file.getParent());
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (Writer writer = Files.newBufferedWriter(temp, Charsets.UTF_8)) {
+                entries.store(writer, "Filters found by Expium Mass Delete for JIRA");
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // Found in favorites again next time
+        }
+    }
+
+    private String key(String name) {
+        return scope + name.trim().toLowerCase();
+    }
+}
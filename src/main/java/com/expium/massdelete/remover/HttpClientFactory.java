@@ -0,0 +1,135 @@
+package com.expium.massdelete.remover;
+
+import com.atlassian.event.api.EventPublisher;
+import com.atlassian.httpclient.api.HttpClient;
+import com.atlassian.httpclient.api.factory.HttpClientOptions;
+import com.atlassian.httpclient.apache.httpcomponents.DefaultHttpClientFactory;
+import com.atlassian.jira.rest.client.api.AuthenticationHandler;
+import com.atlassian.jira.rest.client.internal.async.AsynchronousHttpClientFactory;
+import com.atlassian.jira.rest.client.internal.async.AtlassianHttpClientDecorator;
+import com.atlassian.jira.rest.client.internal.async.DisposableHttpClient;
+import com.atlassian.sal.api.ApplicationProperties;
+import com.atlassian.sal.api.executor.ThreadLocalContextManager;
+import com.expium.massdelete.Options;
+
+import java.io.File;
+import java.net.URI;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates the HTTP client like {@link AsynchronousHttpClientFactory} does, but with the connection pool, timeouts
+ * and connection reuse set up for the number of requests in flight.
+ *
+ * Copyright 2015-2016 Expium LLC
+ * http://expium.com/
+ */
+class HttpClientFactory {
+    private HttpClientFactory() {
+    }
+
+    /**
+     * @param connections size of the connection pool
+     */
+    static DisposableHttpClient create(Options options, AuthenticationHandler auth, int connections) {
+        HttpClientOptions clientOptions = new HttpClientOptions();
+        clientOptions.setMaxTotalConnections(connections);
+        clientOptions.setMaxConnectionsPerHost(connections);
+        // Responses are handed over on callback threads, which must not hold up requests in flight
+        clientOptions.setMaxCallbackThreadPoolSize(connections);
+        clientOptions.setConnectionTimeout(options.connectTimeoutMillis, TimeUnit.MILLISECONDS);
+        clientOptions.setSocketTimeout(options.socketTimeoutMillis, TimeUnit.MILLISECONDS);
+        clientOptions.setConnectionPoolTimeToLive(options.keepAliveSeconds, TimeUnit.SECONDS);
+        // The session cookie is set by the authentication handler
+        clientOptions.setIgnoreCookies(options.session);
+
+        final DefaultHttpClientFactory factory = new DefaultHttpClientFactory(new NoOpEventPublisher(),
+                new ClientApplicationProperties(options.url), new NoOpThreadLocalContextManager());
+        final HttpClient httpClient = factory.create(clientOptions);
+        return new AtlassianHttpClientDecorator(httpClient, auth) {
+            @Override
+            public void destroy() throws Exception {
+                factory.dispose(httpClient);
+            }
+        };
+    }
+
+    private static class NoOpEventPublisher implements EventPublisher {
+        @Override
+        public void publish(Object event) {
+        }
+
+        @Override
+        public void register(Object listener) {
+        }
+
+        @Override
+        public void unregister(Object listener) {
+        }
+
+        @Override
+        public void unregisterAll() {
+        }
+    }
+
+    private static class NoOpThreadLocalContextManager implements ThreadLocalContextManager<Object> {
+        @Override
+        public Object getThreadLocalContext() {
+            return null;
+        }
+
+        @Override
+        public void setThreadLocalContext(Object context) {
+        }
+
+        @Override
+        public void clearThreadLocalContext() {
+        }
+    }
+
+    /**
+     * Only the base URL matters to the HTTP client.
+     */
+    private static class ClientApplicationProperties implements ApplicationProperties {
+        private final String baseUrl;
+
+        ClientApplicationProperties(URI baseUrl) {
+            this.baseUrl = baseUrl.toString();
+        }
+
+        @Override
+        public String getBaseUrl() {
+            return baseUrl;
+        }
+
+        @Override
+        public String getDisplayName() {
+            return "Expium Mass Delete for JIRA";
+        }
+
+        @Override
+        public String getVersion() {
+            return null;
+        }
+
+        @Override
+        public Date getBuildDate() {
+            return null;
+        }
+
+        @Override
+        public String getBuildNumber() {
+            return null;
+        }
+
+        @Override
+        public File getHomeDirectory() {
+            return null;
+        }
+
+        @Override
+        public String getPropertyValue(String key) {
+            return null;
+        }
+    }
+}
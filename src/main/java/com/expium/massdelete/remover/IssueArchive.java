@@ -0,0 +1,227 @@
+package com.expium.massdelete.remover;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Record of the issues deleted, each as returned by the search, one JSON object per line, compressed with gzip.
+ * Issues are added right before being deleted, so the archive may also hold some that failed to delete.
+ * <p>
+ * A thread of its own compresses and writes the issues, taking them from a bounded queue, so that deleting only
+ * waits for it when the disk cannot keep up. The file is synced to disk before the journal records each
+ * checkpoint, so that the issues before a checkpoint are always in the archive. Each run writes a file of its own,
+ * numbered if the given one exists, rather than appending to one a previous run may have left incomplete. The file
+ * is only created once the first issue is added.
+ *
+ * Copyright 2015-2016 Expium LLC
+ * http://expium.com/
+ */
+class IssueArchive implements Closeable {
+    private static final int QUEUE_SIZE = 4096;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final byte[] END = new byte[0];
+
+    private final RemovalListener ui;
+    private final Path requestedFile;
+    // Lines to write, END, or actions to run once all before are synced
+    private final BlockingQueue<Object> queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+
+    // Set when the first issue is added. Guarded by this.
+    private Path file;
+    private FileOutputStream out;
+    private GZIPOutputStream gzip;
+    private Thread writer;
+    private boolean closed;
+
+    private volatile IOException error;
+
+    IssueArchive(RemovalListener ui, Path file) {
+        this.ui = ui;
+        this.requestedFile = file;
+    }
+
+    /**
+     * @return true if writing the archive failed, in which case nothing is to be deleted anymore
+     */
+    boolean isFailed() {
+        return error != null;
+    }
+
+    /**
+     * Adds the issue, waiting while the queue is full.
+     *
+     * @throws IOException if writing the archive failed
+     */
+    void add(IssueRef issue) throws IOException, InterruptedException {
+        byte[] json = issue.getJson();
+        if (json == null) {
+            throw new IOException("Issue " + issue.getKey() + " was found without the fields to archive");
+        }
+        put(json);
+    }
+
+    /**
+     * Runs the action on the writer thread once all issues added so far are synced to disk, without waiting for
+     * it. The action does not run if writing the archive failed.
+     */
+    void sync(Runnable action) {
+        synchronized (this) {
+            if (writer == null && !closed) {
+                // Nothing to sync
+                action.run();
+                return;
+            }
+        }
+        try {
+            put(action);
+        } catch (IOException e) {
+            // Already logged, or closing
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writes the issues still queued and syncs them to disk.
+     */
+    @Override
+    public void close() {
+        Thread started;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            started = writer;
+        }
+        if (started == null) {
+            return;
+        }
+        try {
+            queue.put(END);
+            started.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        try {
+            gzip.finish();
+            gzip.flush();
+            out.getFD().sync();
+            out.close();
+        } catch (IOException e) {
+            if (error == null) {
+                ui.error("Unable to write archive " + file, e);
+            }
+        }
+    }
+
+    /**
+     * Holds the lock while waiting for room in the queue, so that nothing is added once closing.
+     */
+    private synchronized void put(Object item) throws IOException, InterruptedException {
+        IOException failed = error;
+        if (failed != null) {
+            throw new IOException("Unable to write archive " + file, failed);
+        }
+        if (closed) {
+            throw new IOException("The archive is closed");
+        }
+        if (writer == null) {
+            start();
+        }
+        queue.put(item);
+    }
+
+    /**
+     * Creates the file, or the first of file.2.ext, file.3.ext etc. that does not exist.
+     */
+    private void start() throws IOException {
+        String name = requestedFile.getFileName().toString();
+        // From the first dot, not counting a leading one
+        int dot = name.indexOf('.', 1);
+        String base = dot == -1 ? name : name.substring(0, dot);
+        String extension = dot == -1 ? "" : name.substring(dot);
+        Path unused = requestedFile;
+        for (int n = 2; Files.exists(unused); n++) {
+            unused = requestedFile.resolveSibling(base + "." + n + extension);
+        }
+
+        file = unused;
+        out = new FileOutputStream(Files.createFile(file).toFile());
+        // Sync flush, so that flushing makes all written so far decompressible
+        gzip = new GZIPOutputStream(new BufferedOutputStream(out, BUFFER_SIZE), BUFFER_SIZE, true);
+        writer = new ThreadFactoryBuilder().setNameFormat("archive").setDaemon(true).build()
+                .newThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        write();
+                    }
+                });
+        writer.start();
+        ui.info("Archiving the issues to {} before deleting them.", file);
+    }
+
+    private void write() {
+        List<Object> taken = new ArrayList<>();
+        List<Runnable> actions = new ArrayList<>();
+        while (true) {
+            try {
+                taken.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            // Syncs once for all actions queued meanwhile
+            queue.drainTo(taken);
+            boolean end = false;
+            for (Object item : taken) {
+                if (item == END) {
+                    end = true;
+                } else if (item instanceof Runnable) {
+                    actions.add((Runnable) item);
+                } else if (error == null) {
+                    try {
+                        gzip.write((byte[]) item);
+                        gzip.write('\n');
+                    } catch (IOException e) {
+                        failed(e);
+                    }
+                }
+            }
+            taken.clear();
+            if (!actions.isEmpty() && error == null) {
+                try {
+                    gzip.flush();
+                    out.getFD().sync();
+                } catch (IOException e) {
+                    failed(e);
+                }
+            }
+            if (error == null) {
+                for (Runnable action : actions) {
+                    action.run();
+                }
+            }
+            actions.clear();
+            if (end) {
+                return;
+            }
+        }
+    }
+
+    private void failed(IOException e) {
+        error = e;
+        ui.error("Unable to write archive " + file + ", no more issues will be deleted", e);
+    }
+}
@@ -0,0 +1,111 @@
+package com.expium.massdelete.remover;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Set of issue keys, storing each "PROJ-123" as one primitive long made of the project's index and the issue
+ * number. Millions of keys take tens of megabytes instead of hundreds. Keys not in that form are kept as they
+ * are. Thread-safe.
+ *
+ * Copyright 2015-2016 Expium LLC
+ * http://expium.com/
+ */
+class IssueKeySet implements Iterable<String> {
+    private static final int NUMBER_BITS = 40;
+    private static final long MAX_NUMBER = (1L << NUMBER_BITS) - 1;
+    private static final int MAX_PROJECTS = 1 << (63 - NUMBER_BITS);
+
+    private final Map<String, Integer> projectIndexes = new HashMap<>();
+    private final List<String> projects = new ArrayList<>();
+    private final LongHashSet encoded;
+    private final Set<String> other = new HashSet<>();
+
+    // Keys mostly come in runs from one project, this spares looking it up
+    private String lastProject = "";
+    private int lastProjectIndex = -1;
+
+    IssueKeySet() {
+        encoded = new LongHashSet();
+    }
+
+    IssueKeySet(int expectedSize) {
+        encoded = new LongHashSet(expectedSize);
+    }
+
+    synchronized boolean contains(String key) {
+        long value = encode(key, false);
+        return value == -1 ? other.contains(key) : encoded.contains(value);
+    }
+
+    /**
+     * @return false if the key was already present
+     */
+    synchronized boolean add(String key) {
+        long value = encode(key, true);
+        return value == -1 ? other.add(key) : encoded.add(value);
+    }
+
+    synchronized int size() {
+        return encoded.size() + other.size();
+    }
+
+    /**
+     * Iterates over a copy, the set may be modified meanwhile.
+     */
+    @Override
+    public synchronized Iterator<String> iterator() {
+        final List<String> keys = new ArrayList<>(size());
+        encoded.forEach(new LongHashSet.Visitor() {
+            @Override
+            public void visit(long value) {
+                keys.add(projects.get((int) (value >>> NUMBER_BITS)) + "-" + (value & MAX_NUMBER));
+            }
+        });
+        keys.addAll(other);
+        return keys.iterator();
+    }
+
+    /**
+     * @return -1 if the key can not be encoded
+     */
+    private long encode(String key, boolean register) {
+        int dash = key.lastIndexOf('-');
+        if (dash <= 0 || dash == key.length() - 1 || key.length() - dash - 1 > 12) {
+            return -1;
+        }
+        long number = 0;
+        for (int i = dash + 1; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            number = number * 10 + (c - '0');
+        }
+        // Leading zeros would not survive decoding
+        if (number > MAX_NUMBER || (key.charAt(dash + 1) == '0' && dash + 2 < key.length())) {
+            return -1;
+        }
+
+        if (lastProjectIndex == -1 || lastProject.length() != dash || !key.startsWith(lastProject)) {
+            String project = key.substring(0, dash);
+            Integer index = projectIndexes.get(project);
+            if (index == null) {
+                if (!register || projects.size() >= MAX_PROJECTS) {
+                    return -1;
+                }
+                index = projects.size();
+                projects.add(project);
+                projectIndexes.put(project, index);
+            }
+            lastProject = project;
+            lastProjectIndex = index;
+        }
+        return ((long) lastProjectIndex << NUMBER_BITS) | number;
+    }
+}
@@ -0,0 +1,68 @@
+package com.expium.massdelete.remover;
+
+/**
+ * The little the removal needs to know about an issue. Summary is only present in verbose mode. The parent is only
+ * known for subtasks, which JIRA deletes along with it. The issue as returned by the search is only kept when
+ * archiving.
+ *
+ * Copyright 2015-2016 Expium LLC
+ * http://expium.com/
+ */
+public final class IssueRef {
+    private final long id;
+    private final String key;
+    private final String summary;
+    private final long parentId;
+    private final byte[] json;
+
+    public IssueRef(long id, String key, String summary) {
+        this(id, key, summary, 0, null);
+    }
+
+    /**
+     * @param parentId 0 unless the issue is a subtask
+     * @param json null unless archiving
+     */
+    public IssueRef(long id, String key, String summary, long parentId, byte[] json) {
+        this.id = id;
+        this.key = key;
+        this.summary = summary;
+        this.parentId = parentId;
+        this.json = json;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public String getSummary() {
+        return summary;
+    }
+
+    public boolean isSubtask() {
+        return parentId != 0;
+    }
+
+    /**
+     * @return 0 unless the issue is a subtask
+     */
+    public long getParentId() {
+        return parentId;
+    }
+
+    /**
+     * @return the issue as returned by the search, in UTF-8, or null unless archiving
+     */
+    public byte[] getJson() {
+        return json;
+    }
+
+    @Override
+    public String toString() {
+        return key;
+    }
+}
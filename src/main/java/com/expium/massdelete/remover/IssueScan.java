@@ -0,0 +1,82 @@
+package com.expium.massdelete.remover;
+
+import com.expium.massdelete.Options;
+import com.expium.massdelete.PagingMode;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Pages through all issues a query matches, for the modes that look at all of them before removing any. Keeps
+ * count of the pages, the time spent searching and the size of the responses.
+ *
+ * Copyright 2015-2016 Expium LLC
+ * http://expium.com/
+ */
+class IssueScan {
+    interface Listener {
+        void found(IssueRef issue) throws IOException;
+    }
+
+    private final IssueSearcher client;
+    private final Options options;
+
+    private int pages;
+    private long nanos;
+    private long bytes;
+
+    IssueScan(IssueSearcher client, Options options) {
+        this.client = client;
+        this.options = options;
+    }
+
+    /**
+     * @return false if a search failed
+     */
+    boolean run(String jql, Listener listener) throws IOException {
+        KeysetJql keysetJql = options.paging == PagingMode.OFFSET ? null
+                : new KeysetJql(jql, options.paging == PagingMode.ID_DESC);
+        long lastId = -1;
+        int offset = 0;
+        while (true) {
+            String pageJql = keysetJql == null ? jql : lastId == -1 ? keysetJql.first() : keysetJql.after(lastId);
+            long bytesBefore = client.getSearchResponseBytes();
+            long start = System.nanoTime();
+            KeySearchResult result;
+            try {
+                result = client.search(pageJql, options.queryBatchSize, offset);
+            } catch (Exception e) {
+                // Already logged and retried by the client
+                return false;
+            }
+            nanos += System.nanoTime() - start;
+            bytes += client.getSearchResponseBytes() - bytesBefore;
+
+            List<IssueRef> found = result.getIssues();
+            if (found.isEmpty()) {
+                return true;
+            }
+            pages++;
+            for (IssueRef issue : found) {
+                listener.found(issue);
+            }
+            lastId = found.get(found.size() - 1).getId();
+            // With keyset paging, the query of the next page already leaves out the issues found
+            if (keysetJql == null) {
+                offset += found.size();
+            }
+        }
+    }
+
+    int getPages() {
+        return pages;
+    }
+
+    long getNanos() {
+        return nanos;
+    }
+
+    long getBytes() {
+        return bytes;
+    }
+}
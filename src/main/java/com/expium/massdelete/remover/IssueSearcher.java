@@ -0,0 +1,16 @@
+package com.expium.massdelete.remover;
+
+/**
+ * Finds the ids and keys of the issues a query matches, one page at a time.
+ *
+ * Copyright 2015-2016 Expium LLC
+ * http://expium.com/
+ */
+interface IssueSearcher {
+    KeySearchResult search(String jql, int maxResults, int offset) throws Exception;
+
+    /**
+     * @return total size of search response bodies read so far
+     */
+    long getSearchResponseBytes();
+}
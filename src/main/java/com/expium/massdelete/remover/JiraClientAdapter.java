@@ -1,105 +1,529 @@
 package com.expium.massdelete.remover;
 
+import com.atlassian.httpclient.api.Response;
 import com.atlassian.jira.rest.client.api.AuthenticationHandler;
 import com.atlassian.jira.rest.client.api.JiraRestClient;
 import com.atlassian.jira.rest.client.api.domain.Filter;
-import com.atlassian.jira.rest.client.api.domain.Issue;
-import com.atlassian.jira.rest.client.api.domain.SearchResult;
-import com.atlassian.jira.rest.client.auth.BasicHttpAuthenticationHandler;
-import com.atlassian.jira.rest.client.internal.async.AsynchronousJiraRestClientFactory;
+import com.atlassian.jira.rest.client.internal.async.AsynchronousJiraRestClient;
+import com.atlassian.jira.rest.client.internal.async.DisposableHttpClient;
 import com.atlassian.util.concurrent.Promise;
 import com.expium.massdelete.Options;
-import com.expium.massdelete.ui.UI;
-import com.google.common.base.Predicates;
-import com.google.common.base.Throwables;
-import com.google.common.collect.Iterables;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.google.common.io.CountingInputStream;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import java.io.Closeable;
 import java.io.IOException;
-import java.util.HashSet;
-import java.util.Set;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.io.UnsupportedEncodingException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Copyright 2015-2016 Expium LLC
  * http://expium.com/
  */
-public class JiraClientAdapter implements Closeable {
-    private static final int RETRY_ATTEMPTS = 3;
-    private static final int RETRY_INTERVAL_SECONDS = 10;
+public class JiraClientAdapter implements Closeable, IssueSearcher {
+    private static final JsonFactory JSON = new JsonFactory();
+    private static final long BULK_POLL_MIN_MILLIS = 250;
+    private static final long BULK_POLL_MAX_MILLIS = 5_000;
 
-    private final UI ui;
+    private final RemovalListener ui;
 
     private final AuthenticationHandler auth;
+    // Null unless authenticating with a session cookie
+    private final SessionAuthenticationHandler session;
+    private final int connections;
+    private final AtomicInteger requestsInFlight = new AtomicInteger();
+    private final AtomicLong searchResponseBytes = new AtomicLong();
+    private final DisposableHttpClient httpClient;
     private final JiraRestClient client;
+    private final URI baseUrl;
+    private final String searchFields;
+    private final KeySearchParser keySearchParser;
+    private final List<RequestListener> listeners = new CopyOnWriteArrayList<>();
+    private final RetryPolicy retryPolicy;
+    // Waits between attempts of asynchronous requests
+    private final ScheduledExecutorService retryScheduler = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("retry-%d").setDaemon(true).build());
 
-    public JiraClientAdapter(UI ui, Options options) {
+    public JiraClientAdapter(RemovalListener ui, Options options) {
         this.ui = ui;
 
-        auth = new BasicHttpAuthenticationHandler(options.user, options.password);
-        client = new AsynchronousJiraRestClientFactory().create(options.url, auth);
+        if (options.session) {
+            session = new SessionAuthenticationHandler(options);
+            auth = session;
+        } else {
+            session = null;
+            auth = new PasswordAuthenticationHandler(options);
+        }
+        // A connection for each delete worker, and some for searching and other requests
+        connections = options.connections > 0 ? options.connections : options.parallelism + 2;
+        // Same as AsynchronousJiraRestClientFactory does, but keeping the HTTP client for direct requests
+        httpClient = HttpClientFactory.create(options, auth, connections);
+        client = new AsynchronousJiraRestClient(options.url, httpClient);
+        baseUrl = options.url;
+        // Key and id are always returned, summary is only logged in verbose mode. Parent and type tell subtasks.
+        String fields = options.verbose ? "summary,parent,issuetype" : "parent,issuetype";
+        if (options.archive != null) {
+            fields += "," + options.archiveFields;
+        }
+        searchFields = fields;
+        keySearchParser = new KeySearchParser(options.archive != null);
+        retryPolicy = new RetryPolicy(options.retries, options.retryDelayMillis, options.retryBudgetPercent);
+    }
+
+    /**
+     * Creates the client on a thread of its own, for the classes of the REST and HTTP clients to load meanwhile.
+     * The password is only needed once the first request is sent.
+     */
+    public static Future<JiraClientAdapter> createInBackground(final RemovalListener ui, final Options options) {
+        FutureTask<JiraClientAdapter> task = new FutureTask<>(new Callable<JiraClientAdapter>() {
+            @Override
+            public JiraClientAdapter call() {
+                return new JiraClientAdapter(ui, options);
+            }
+        });
+        Thread thread = new Thread(task, "client-setup");
+        thread.setDaemon(true);
+        thread.start();
+        return task;
     }
 
     @Override
     public void close() throws IOException {
+        retryScheduler.shutdownNow();
         client.close();
     }
 
+    public void addListener(RequestListener listener) {
+        listeners.add(listener);
+    }
+
     public Iterable<Filter> getFavoriteFilters() throws Exception {
         return unwrap(client.getSearchClient().getFavouriteFilters(), "get favorite filters");
     }
 
-    public SearchResult search(final Filter filter, final int maxResults, final int offset) throws Exception {
-        return tryWithRetries(new Callable<SearchResult>() {
+    public Filter getFilter(long id) throws Exception {
+        return unwrap(client.getSearchClient().getFilter(id), "get filter " + id);
+    }
+
+    /**
+     * Checks that JIRA is reachable and accepts the credentials, with a request that is cheap for the server.
+     * Logs in first when authenticating with a session.
+     */
+    public void verifyConnectivity() throws Exception {
+        if (session != null) {
+            logIn();
+        }
+        Response response = execute(httpClient.newRequest(uri("/rest/api/2/myself", null))
+                .setAccept("application/json").get(), "connect to JIRA");
+        response.getEntityStream().close();
+    }
+
+    /**
+     * Searches bypassing the JIRA REST client, which would require and parse many more fields than needed.
+     */
+    @Override
+    public KeySearchResult search(final String jql, final int maxResults, final int offset) throws Exception {
+        return tryWithRetries(RequestListener.Operation.SEARCH, new Callable<KeySearchResult>() {
             @Override
-            public SearchResult call() throws Exception {
-                Set<String> fields = new HashSet<>();
-                fields.add("summary");
-                fields.add("key");
-                fields.add("issuetype");
-                fields.add("created");
-                fields.add("updated");
-                fields.add("project");
-                fields.add("status");
-                return unwrap(client.getSearchClient().searchJql(filter.getJql(), maxResults, offset, fields),
+            public KeySearchResult call() throws Exception {
+                URI uri = uri("/rest/api/2/search", "jql=" + encode(jql) + "&startAt=" + offset + "&maxResults="
+                        + maxResults + "&fields=" + encode(searchFields));
+                Response response = execute(httpClient.newRequest(uri).setAccept("application/json").get(),
                         "search for issues");
+                try (CountingInputStream in = new CountingInputStream(response.getEntityStream())) {
+                    try {
+                        return keySearchParser.parse(in);
+                    } finally {
+                        searchResponseBytes.addAndGet(in.getCount());
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * @return total size of search response bodies read so far
+     */
+    @Override
+    public long getSearchResponseBytes() {
+        return searchResponseBytes.get();
+    }
+
+    /**
+     * Gets the issue without any fields, a round trip comparable to deleting it. Not retried.
+     */
+    public void getIssue(IssueRef issue) throws Exception {
+        String key = issue.getKey();
+        Response response = execute(httpClient.newRequest(uri("/rest/api/2/issue/" + encode(key), "fields=key"))
+                .setAccept("application/json").get(), "get issue " + key);
+        response.getEntityStream().close();
+    }
+
+    /**
+     * @return true if the issue exists, without failing when it does not
+     */
+    public boolean exists(IssueRef issue) throws Exception {
+        String key = issue.getKey();
+        String operation = "get issue " + key;
+        Response response = send(httpClient.newRequest(uri("/rest/api/2/issue/" + encode(key), "fields=key"))
+                .setAccept("application/json").get(), operation);
+        if (response.getStatusCode() == 404) {
+            response.getEntityStream().close();
+            return false;
+        }
+        check(response, operation).getEntityStream().close();
+        return true;
+    }
+
+    /**
+     * @return true if JIRA is Cloud, which has the bulk delete API
+     */
+    public boolean isCloud() throws Exception {
+        Response response = execute(httpClient.newRequest(uri("/rest/api/2/serverInfo", null))
+                .setAccept("application/json").get(), "get server info");
+        try (JsonParser parser = JSON.createParser(response.getEntityStream())) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return false;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                if ("deploymentType".equals(field)) {
+                    return "Cloud".equalsIgnoreCase(parser.getText());
+                }
+                parser.skipChildren();
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Gets the server info, a request that is cheap for the server, for its latency to tell how loaded the server
+     * is. Not retried, and failures are left to the caller to report.
+     */
+    public void probe() throws Exception {
+        Response response;
+        requestsInFlight.incrementAndGet();
+        try {
+            response = httpClient.newRequest(uri("/rest/api/2/serverInfo", null)).setAccept("application/json")
+                    .get().get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        } finally {
+            requestsInFlight.decrementAndGet();
+        }
+        if (response.getStatusCode() / 100 != 2) {
+            throw new JiraResponseException(response);
+        }
+        response.getEntityStream().close();
+    }
+
+    /**
+     * Deletes the issues, with their subtasks, in a single task run by JIRA Cloud, and waits for the task to
+     * finish. Blocks the calling thread, polling the progress of the task less and less often.
+     */
+    public BulkDeleteTask bulkDelete(List<IssueRef> issues) throws Exception {
+        StringWriter body = new StringWriter();
+        try (JsonGenerator json = JSON.createGenerator(body)) {
+            json.writeStartObject();
+            json.writeArrayFieldStart("selectedIssueIdsOrKeys");
+            for (IssueRef issue : issues) {
+                json.writeString(String.valueOf(issue.getId()));
+            }
+            json.writeEndArray();
+            json.writeBooleanField("sendBulkNotification", false);
+            json.writeEndObject();
+        }
+        final String request = body.toString();
+        final String taskId = tryWithRetries(RequestListener.Operation.BULK_DELETE, new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                Response response = execute(httpClient.newRequest(uri("/rest/api/3/bulk/issues/delete", null))
+                        .setContentType("application/json").setAccept("application/json").setEntity(request).post(),
+                        "submit bulk delete");
+                try (InputStream in = response.getEntityStream()) {
+                    return BulkDeleteTask.parseTaskId(in);
+                }
             }
-        }, RETRY_ATTEMPTS);
+        });
 
+        long pollMillis = BULK_POLL_MIN_MILLIS;
+        while (true) {
+            Thread.sleep(pollMillis);
+            BulkDeleteTask task = tryWithRetries(RequestListener.Operation.BULK_STATUS,
+                    new Callable<BulkDeleteTask>() {
+                        @Override
+                        public BulkDeleteTask call() throws Exception {
+                            Response response = execute(httpClient.newRequest(uri("/rest/api/3/bulk/queue/"
+                                    + encode(taskId), null)).setAccept("application/json").get(),
+                                    "get bulk delete task " + taskId);
+                            try (InputStream in = response.getEntityStream()) {
+                                return BulkDeleteTask.parse(in);
+                            }
+                        }
+                    });
+            if (task.isFinished()) {
+                return task;
+            }
+            pollMillis = Math.min(BULK_POLL_MAX_MILLIS, pollMillis * 2);
+        }
     }
 
-    public void delete(final Issue issue) throws Exception {
-        tryWithRetries(new Callable<Void>() {
+    /**
+     * Deletes bypassing the JIRA REST client, so that the response status and headers are available when the
+     * server is overloaded.
+     */
+    public void delete(final IssueRef issue) throws Exception {
+        tryWithRetries(RequestListener.Operation.DELETE, new Callable<Void>() {
             @Override
             public Void call() throws Exception {
                 String key = issue.getKey();
-                return unwrap(client.getIssueClient().deleteIssue(key, true), "delete issue " + key);
+                URI uri = uri("/rest/api/2/issue/" + encode(key), "deleteSubtasks=true");
+                execute(httpClient.newRequest(uri).delete(), "delete issue " + key).getEntityStream().close();
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Like {@link #delete}, but an issue that does not exist (any more) is not an error.
+     *
+     * @return false if the issue was not found
+     */
+    public boolean deleteIfExists(final IssueRef issue) throws Exception {
+        return tryWithRetries(RequestListener.Operation.DELETE, new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                String key = issue.getKey();
+                String operation = "delete issue " + key;
+                URI uri = uri("/rest/api/2/issue/" + encode(key), "deleteSubtasks=true");
+                Response response = send(httpClient.newRequest(uri).delete(), operation);
+                if (response.getStatusCode() == 404) {
+                    response.getEntityStream().close();
+                    return false;
+                }
+                check(response, operation).getEntityStream().close();
+                return true;
             }
-        }, RETRY_ATTEMPTS);
+        });
     }
 
-    private <T> T tryWithRetries(Callable<T> producer, int attempts) throws Exception {
+    /**
+     * Deletes like {@link #delete}, but without blocking the calling thread. The request completes on a callback
+     * thread of the HTTP client, and retries wait on a scheduler rather than on a thread of their own.
+     *
+     * @param ifExists true for an issue that does not exist (any more) not to be an error, as with
+     *            {@link #deleteIfExists}
+     * @return whether the issue was found
+     */
+    public ListenableFuture<Boolean> deleteAsync(IssueRef issue, boolean ifExists) {
+        SettableFuture<Boolean> result = SettableFuture.create();
+        deleteAsync(issue, ifExists, 1, false, result);
+        return result;
+    }
+
+    private void deleteAsync(final IssueRef issue, final boolean ifExists, final int retry,
+            final boolean loggedInAgain, final SettableFuture<Boolean> result) {
+        final String operation = "delete issue " + issue.getKey();
+        final long start = System.nanoTime();
+        URI uri;
         try {
-            return producer.call();
-        } catch (Exception e) {
-            if (isIoException(e) && attempts > 0) {
-                ui.info("The operation will be attempted {} more time(s), next try in {} seconds", attempts,
-                        RETRY_INTERVAL_SECONDS);
-                Thread.sleep(RETRY_INTERVAL_SECONDS * 1000);
-                return tryWithRetries(producer, attempts - 1);
-            } else {
-                throw e;
+            uri = uri("/rest/api/2/issue/" + encode(issue.getKey()), "deleteSubtasks=true");
+        } catch (UnsupportedEncodingException e) {
+            result.setException(e);
+            return;
+        }
+        requestsInFlight.incrementAndGet();
+        httpClient.newRequest(uri).delete().then(new FutureCallback<Response>() {
+            @Override
+            public void onSuccess(Response response) {
+                requestsInFlight.decrementAndGet();
+                boolean found = !(ifExists && response.getStatusCode() == 404);
+                if (found && response.getStatusCode() / 100 != 2) {
+                    failed(new JiraResponseException(response));
+                    return;
+                }
+                try {
+                    response.getEntityStream().close();
+                } catch (IOException e) {
+                    // Deleted all the same
+                }
+                for (RequestListener listener : listeners) {
+                    listener.succeeded(RequestListener.Operation.DELETE, System.nanoTime() - start);
+                }
+                retryPolicy.succeeded();
+                result.set(found);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                requestsInFlight.decrementAndGet();
+                failed(t instanceof Exception ? (Exception) t : new RuntimeException(t));
+            }
+
+            private void failed(Exception e) {
+                ui.jiraRequestFailed(operation, e);
+                for (RequestListener listener : listeners) {
+                    listener.failed(RequestListener.Operation.DELETE, System.nanoTime() - start, e);
+                }
+                if (isSessionExpired(e, loggedInAgain)) {
+                    retryScheduler.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                logIn();
+                            } catch (Exception e) {
+                                // Falls back to basic authentication
+                            }
+                            deleteAsync(issue, ifExists, retry, true, result);
+                        }
+                    });
+                    return;
+                }
+                long delay = retryDelay(RequestListener.Operation.DELETE, retry, e);
+                if (delay < 0) {
+                    result.setException(e);
+                    return;
+                }
+                retryScheduler.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        deleteAsync(issue, ifExists, retry + 1, loggedInAgain, result);
+                    }
+                }, delay, TimeUnit.MILLISECONDS);
+            }
+        });
+    }
+
+    private void logIn() throws Exception {
+        session.loggedOut();
+        Response response = unwrap(httpClient.newRequest(uri("/rest/auth/1/session", null))
+                .setContentType("application/json").setEntity(session.loginRequest()).post(), "log in");
+        try (InputStream in = response.getEntityStream()) {
+            if (response.getStatusCode() / 100 == 2 && session.loggedIn(in)) {
+                return;
+            }
+        }
+        ui.warn("Unable to log in with a session ({} {}), sending the password with each request instead",
+                response.getStatusCode(), response.getStatusText());
+    }
+
+    /**
+     * The HTTP client does not expose its connection pool, so its state is derived from the number of requests in
+     * flight, each of which holds a connection or waits for one.
+     */
+    public int getLeasedConnections() {
+        return Math.min(requestsInFlight.get(), connections);
+    }
+
+    public int getAvailableConnections() {
+        return connections - getLeasedConnections();
+    }
+
+    /**
+     * @return number of requests waiting for a connection
+     */
+    public int getPendingRequests() {
+        return Math.max(0, requestsInFlight.get() - connections);
+    }
+
+    private <T> Callable<T> observed(final RequestListener.Operation operation, final Callable<T> request) {
+        return new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                long start = System.nanoTime();
+                try {
+                    T result = request.call();
+                    for (RequestListener listener : listeners) {
+                        listener.succeeded(operation, System.nanoTime() - start);
+                    }
+                    return result;
+                } catch (Exception e) {
+                    for (RequestListener listener : listeners) {
+                        listener.failed(operation, System.nanoTime() - start, e);
+                    }
+                    throw e;
+                }
+            }
+        };
+    }
+
+    /**
+     * Sleeps on the calling thread between attempts. Other deletions in flight run on their own threads and are
+     * not held up.
+     */
+    private <T> T tryWithRetries(RequestListener.Operation operation, Callable<T> request) throws Exception {
+        Callable<T> producer = observed(operation, request);
+        boolean loggedInAgain = false;
+        for (int retry = 1; ; retry++) {
+            try {
+                T result = producer.call();
+                retryPolicy.succeeded();
+                return result;
+            } catch (Exception e) {
+                if (isSessionExpired(e, loggedInAgain)) {
+                    loggedInAgain = true;
+                    retry--;
+                    logIn();
+                    continue;
+                }
+                long delay = retryDelay(operation, retry, e);
+                if (delay < 0) {
+                    throw e;
+                }
+                Thread.sleep(delay);
             }
         }
     }
 
+    private boolean isSessionExpired(Exception e, boolean loggedInAgain) {
+        return session != null && session.isLoggedIn() && !loggedInAgain && JiraErrors.statusCode(e) == 401;
+    }
+
+    /**
+     * @return milliseconds to wait before trying the failed request again, or -1 to give up
+     */
+    private long retryDelay(RequestListener.Operation operation, int retry, Exception e) {
+        if (retry > retryPolicy.getMaxRetries() || !RetryPolicy.isRetryable(e)) {
+            return -1;
+        }
+        if (!retryPolicy.tryAcquireRetry()) {
+            ui.warn("Too many requests are failing, giving up without retrying");
+            return -1;
+        }
+        long delay = retryPolicy.delayMillis(retry, e);
+        for (RequestListener listener : listeners) {
+            listener.retrying(operation, delay, e);
+        }
+        ui.info("The operation will be attempted {} more time(s), next try in {} ms",
+                retryPolicy.getMaxRetries() - retry + 1, delay);
+        return delay;
+    }
+
     <T> T unwrap(Promise<T> value, String operation) throws Exception {
         try {
             return value.get();
-        } catch (InterruptedException e) {
-            ui.interrupted();
-            throw e;
         } catch (ExecutionException ee) {
             Throwable e = ee.getCause();
             ui.jiraRequestFailed(operation, e);
@@ -114,7 +538,38 @@ public class JiraClientAdapter implements Closeable {
         }
     }
 
-    private boolean isIoException(Throwable e) {
-        return Iterables.any(Throwables.getCausalChain(e), Predicates.instanceOf(IOException.class));
+    private Response execute(Promise<Response> request, String operation) throws Exception {
+        return check(send(request, operation), operation);
+    }
+
+    private Response send(Promise<Response> request, String operation) throws Exception {
+        requestsInFlight.incrementAndGet();
+        try {
+            return unwrap(request, operation);
+        } finally {
+            requestsInFlight.decrementAndGet();
+        }
     }
+
+    private Response check(Response response, String operation) throws Exception {
+        if (response.getStatusCode() / 100 != 2) {
+            JiraResponseException e = new JiraResponseException(response);
+            ui.jiraRequestFailed(operation, e);
+            throw e;
+        }
+        return response;
+    }
+
+    private URI uri(String path, String query) {
+        String base = baseUrl.toString();
+        if (base.endsWith("/")) {
+            base = base.substring(0, base.length() - 1);
+        }
+        return URI.create(base + path + (query == null ? "" : "?" + query));
+    }
+
+    private static String encode(String value) throws UnsupportedEncodingException {
+        return URLEncoder.encode(value, "UTF-8");
+    }
+
 }
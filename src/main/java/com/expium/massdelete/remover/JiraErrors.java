@@ -0,0 +1,36 @@
+package com.expium.massdelete.remover;
+
+import com.atlassian.jira.rest.client.api.RestClientException;
+import com.google.common.base.Predicates;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Iterables;
+
+import java.net.SocketTimeoutException;
+
+/**
+ * Tells what went wrong with a failed JIRA request, whether made by the REST client or directly over HTTP.
+ *
+ * Copyright 2015-2016 Expium LLC
+ * http://expium.com/
+ */
+public final class JiraErrors {
+    private JiraErrors() {
+    }
+
+    public static boolean isTimeout(Throwable e) {
+        return Iterables
+                .any(Throwables.getCausalChain(e), Predicates.instanceOf(SocketTimeoutException.class));
+    }
+
+    /**
+     * @return HTTP status of a failed JIRA request, or -1 if not known
+     */
+    public static int statusCode(Throwable e) {
+        if (e instanceof RestClientException) {
+            return ((RestClientException) e).getStatusCode().or(-1);
+        } else if (e instanceof JiraResponseException) {
+            return ((JiraResponseException) e).getStatusCode();
+        }
+        return -1;
+    }
+}
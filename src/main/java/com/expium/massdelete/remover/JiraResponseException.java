@@ -0,0 +1,71 @@
+package com.expium.massdelete.remover;
+
+import com.atlassian.httpclient.api.Response;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+
+/**
+ * A request made directly over HTTP, bypassing the JIRA REST client, got a non-successful response. The response
+ * body is read and closed when created, so the response is not to be read before.
+ *
+ * Copyright 2015-2016 Expium LLC
+ * http://expium.com/
+ */
+public class JiraResponseException extends RuntimeException {
+    private final int statusCode;
+    private final long retryAfterMillis;
+
+    JiraResponseException(Response response) {
+        super("HTTP " + response.getStatusCode() + " " + response.getStatusText());
+        this.statusCode = response.getStatusCode();
+        this.retryAfterMillis = parseRetryAfter(response.getHeader("Retry-After"));
+        discard(response);
+    }
+
+    /**
+     * Reads the rest of the body and closes it, for the connection to go back to the pool.
+     */
+    private static void discard(Response response) {
+        try (InputStream in = response.getEntityStream()) {
+            byte[] buffer = new byte[4096];
+            while (in.read(buffer) != -1) {
+                // Discarded
+            }
+        } catch (IOException e) {
+            // The connection is not reused then
+        }
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * @return how long the server asked to wait before trying again, or -1 if it did not say
+     */
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+
+    private static long parseRetryAfter(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return -1;
+        }
+        value = value.trim();
+        try {
+            return Math.max(0, Long.parseLong(value) * 1000);
+        } catch (NumberFormatException e) {
+            // Not delta-seconds, must be an HTTP date
+        }
+        try {
+            SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+            return Math.max(0, format.parse(value).getTime() - System.currentTimeMillis());
+        } catch (ParseException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.expium.massdelete.remover;
+
+import com.expium.massdelete.Options;
+import com.google.common.base.Charsets;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A filter or a JQL query whose issues are to be removed.
+ * <p>
+ * Job files list one job per line, as {@code filter: <name>}, {@code filter-id: <id>} or {@code jql: <query>}.
+ * Empty lines and lines starting with # are ignored.
+ *
+ * Copyright 2015-2016 Expium LLC
+ * http://expium.com/
+ */
+class Job {
+    enum Type {
+        FILTER,
+        FILTER_ID,
+        JQL
+    }
+
+    private static final int MAX_NAME_LENGTH = 40;
+
+    private final Type type;
+    private final String value;
+
+    private Job(Type type, String value) {
+        this.type = type;
+        this.value = value;
+    }
+
+    static Job filter(String name) {
+        return new Job(Type.FILTER, name.trim());
+    }
+
+    static Job filterId(long id) {
+        return new Job(Type.FILTER_ID, String.valueOf(id));
+    }
+
+    static Job jql(String jql) {
+        return new Job(Type.JQL, jql.trim());
+    }
+
+    /**
+     * @return the filters and queries given on the command line followed by the jobs from the job file
+     */
+    static List<Job> fromOptions(Options options) throws IOException {
+        List<Job> jobs = new ArrayList<>();
+        for (String filter : options.filters) {
+            jobs.add(filter(filter));
+        }
+        for (long id : options.filterIds) {
+            jobs.add(filterId(id));
+        }
+        for (String jql : options.jqls) {
+            jobs.add(jql(jql));
+        }
+        if (options.jobFile != null) {
+            jobs.addAll(read(options.jobFile.toPath()));
+        }
+        return jobs;
+    }
+
+    private static List<Job> read(Path file) throws IOException {
+        List<Job> jobs = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, Charsets.UTF_8)) {
+            String line;
+            int number = 0;
+            while ((line = reader.readLine()) != null) {
+                number++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                int colon = line.indexOf(':');
+                String type = colon == -1 ? "" : line.substring(0, colon).trim();
+                String value = colon == -1 ? "" : line.substring(colon + 1).trim();
+                if (value.isEmpty()) {
+                    throw new IOException("Line " + number + " of " + file
+                            + " is not \"filter: <name>\", \"filter-id: <id>\" or \"jql: <query>\"");
+                } else if (type.equalsIgnoreCase("filter")) {
+                    jobs.add(filter(value));
+                } else if (type.equalsIgnoreCase("filter-id")) {
+                    try {
+                        jobs.add(filterId(Long.parseLong(value)));
+                    } catch (NumberFormatException e) {
+                        throw new IOException("Invalid filter id on line " + number + " of " + file);
+                    }
+                } else if (type.equalsIgnoreCase("jql")) {
+                    jobs.add(jql(value));
+                } else {
+                    throw new IOException("Unknown job type \"" + type + "\" on line " + number + " of " + file);
+                }
+            }
+        }
+        return jobs;
+    }
+
+    Type getType() {
+        return type;
+    }
+
+    String getValue() {
+        return value;
+    }
+
+    /**
+     * @return short name to tell the job apart in output
+     */
+    String getName() {
+        if (type == Type.FILTER_ID) {
+            return "filter " + value;
+        }
+        if (value.length() <= MAX_NAME_LENGTH) {
+            return value;
+        }
+        return value.substring(0, MAX_NAME_LENGTH - 3) + "...";
+    }
+}
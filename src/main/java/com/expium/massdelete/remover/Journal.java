@@ -0,0 +1,304 @@
+package com.expium.massdelete.remover;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Append-only record of removed and skipped issues and of the paging cursor, so that a removal interrupted in
+ * any way can continue where it stopped.
+ * <p>
+ * Records are lines of text, buffered in memory and written out and synced to disk once a second, so recording
+ * costs next to nothing per issue. Whatever was not synced when the process died is found again by the next
+ * search, and a partially written last line is ignored.
+ * <p>
+ * Removed issues only matter as a count, so on resume and on completion the journal is rewritten to the count,
+ * the skipped keys and the cursor.
+ * <p>
+ * Recording is called from the threads deleting, after the issue is deleted, so it does not throw. Once writing
+ * fails, nothing more is written and the removal is to stop, see {@link #isFailed()}.
+ *
+ * Copyright 2015-2016 Expium LLC
+ * http://expium.com/
+ */
+class Journal implements Closeable {
+    private static final String VERSION = "1";
+    private static final char HEADER = 'J';
+    private static final char REMOVED = 'R';
+    private static final char REMOVED_COUNT = 'N';
+    private static final char SKIPPED = 'S';
+    private static final char CURSOR = 'C';
+    private static final char COMPLETED = 'E';
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long SYNC_INTERVAL_MILLIS = 1_000;
+
+    private final RemovalListener ui;
+    private final Path file;
+    private final String filterHash;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final ScheduledExecutorService syncer = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("journal").setDaemon(true).build());
+
+    private boolean resumed;
+    private int removed;
+    private IssueKeySet skippedKeys = new IssueKeySet();
+    private long cursor = -1;
+
+    private FileChannel channel;
+
+    private volatile IOException error;
+
+    private Journal(RemovalListener ui, Path file, String jql) {
+        this.ui = ui;
+        this.file = file;
+        this.filterHash = Hashing.sha1().hashString(jql == null ? "" : jql, Charsets.UTF_8).toString();
+    }
+
+    /**
+     * Reads the journal if it exists and belongs to an unfinished removal for the same filter, otherwise starts a
+     * new one.
+     */
+    static Journal open(RemovalListener ui, Path file, String jql) throws IOException {
+        final Journal journal = new Journal(ui, file, jql);
+        if (Files.exists(file)) {
+            journal.load();
+        }
+        journal.rewrite(false);
+        journal.channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        journal.syncer.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                journal.sync();
+            }
+        }, SYNC_INTERVAL_MILLIS, SYNC_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        return journal;
+    }
+
+    private void load() throws IOException {
+        boolean sameFilter = false;
+        boolean completed = false;
+        try (BufferedReader reader = Files.newBufferedReader(file, Charsets.UTF_8)) {
+            // Lines are handled one behind, so that a partially written last line can be left out
+            String line = reader.readLine();
+            String next;
+            while (line != null) {
+                next = reader.readLine();
+                if (line.isEmpty() || (next == null && !endsWithNewline())) {
+                    line = next;
+                    continue;
+                }
+                String value = line.substring(Math.min(2, line.length()));
+                switch (line.charAt(0)) {
+                case HEADER:
+                    sameFilter = value.equals(VERSION + "\t" + filterHash);
+                    break;
+                case REMOVED:
+                    removed++;
+                    break;
+                case REMOVED_COUNT:
+                    removed += parseInt(value);
+                    break;
+                case SKIPPED:
+                    skippedKeys.add(value);
+                    break;
+                case CURSOR:
+                    cursor = parseLong(value);
+                    break;
+                case COMPLETED:
+                    completed = true;
+                    break;
+                default:
+                    // Not written by this version
+                }
+                line = next;
+            }
+        }
+
+        resumed = sameFilter && !completed;
+        if (!resumed) {
+            removed = 0;
+            skippedKeys = new IssueKeySet();
+            cursor = -1;
+        }
+    }
+
+    private boolean endsWithNewline() throws IOException {
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (in.size() == 0) {
+                return true;
+            }
+            ByteBuffer last = ByteBuffer.allocate(1);
+            in.read(last, in.size() - 1);
+            return last.get(0) == '\n';
+        }
+    }
+
+    private static int parseInt(String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static long parseLong(String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * @return true if continuing a previous, unfinished removal
+     */
+    boolean isResumed() {
+        return resumed;
+    }
+
+    /**
+     * @return true if writing the journal failed, in which case nothing is to be deleted anymore
+     */
+    boolean isFailed() {
+        return error != null;
+    }
+
+    int getRemoved() {
+        return removed;
+    }
+
+    Iterable<String> getSkippedKeys() {
+        return skippedKeys;
+    }
+
+    /**
+     * @return the last issue id paged over, or -1 if none
+     */
+    long getCursor() {
+        return cursor;
+    }
+
+    synchronized void removed(String key) {
+        removed++;
+        append(REMOVED, key);
+    }
+
+    synchronized void skipped(String key) {
+        skippedKeys.add(key);
+        append(SKIPPED, key);
+    }
+
+    /**
+     * Records that all issues up to the given id have been processed.
+     */
+    synchronized void checkpoint(long id) {
+        cursor = id;
+        append(CURSOR, String.valueOf(id));
+    }
+
+    private synchronized void append(char type, String value) {
+        if (error != null) {
+            return;
+        }
+        byte[] line = (type + "\t" + value + "\n").getBytes(Charsets.UTF_8);
+        try {
+            if (buffer.remaining() < line.length) {
+                writeBuffer();
+            }
+            if (line.length > buffer.capacity()) {
+                channel.write(ByteBuffer.wrap(line));
+            } else {
+                buffer.put(line);
+            }
+        } catch (IOException e) {
+            failed(e);
+        }
+    }
+
+    private void writeBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private synchronized void sync() {
+        if (error != null || channel == null || !channel.isOpen()) {
+            return;
+        }
+        try {
+            writeBuffer();
+            channel.force(false);
+        } catch (IOException e) {
+            failed(e);
+        }
+    }
+
+    private void failed(IOException e) {
+        error = e;
+        ui.error("Unable to write journal " + file + ", no more issues will be deleted", e);
+    }
+
+    /**
+     * Records that the removal is finished and compacts the journal.
+     */
+    synchronized void complete() throws IOException {
+        close();
+        rewrite(true);
+    }
+
+    @Override
+    public synchronized void close() {
+        syncer.shutdown();
+        if (channel != null && channel.isOpen()) {
+            sync();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                if (error == null) {
+                    failed(e);
+                }
+            }
+        }
+    }
+
+    private void rewrite(boolean completed) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            StringBuilder text = new StringBuilder();
+            text.append(HEADER).append('\t').append(VERSION).append('\t').append(filterHash).append('\n');
+            text.append(REMOVED_COUNT).append('\t').append(removed).append('\n');
+            for (String key : skippedKeys) {
+                text.append(SKIPPED).append('\t').append(key).append('\n');
+            }
+            if (cursor != -1) {
+                text.append(CURSOR).append('\t').append(cursor).append('\n');
+            }
+            if (completed) {
+                text.append(COMPLETED).append('\n');
+            }
+            ByteBuffer bytes = ByteBuffer.wrap(text.toString().getBytes(Charsets.UTF_8));
+            while (bytes.hasRemaining()) {
+                out.write(bytes);
+            }
+            out.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
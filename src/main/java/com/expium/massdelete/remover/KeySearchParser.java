@@ -0,0 +1,148 @@
+package com.expium.massdelete.remover;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the response of /rest/api/2/search token by token, keeping only issue ids, keys, summaries and the parents
+ * of subtasks. Nothing else from the response is materialized, except each issue as a whole when archiving.
+ *
+ * Copyright 2015-2016 Expium LLC
+ * http://expium.com/
+ */
+class KeySearchParser {
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private final boolean keepJson;
+
+    /**
+     * @param keepJson whether to keep each issue as returned, to archive it
+     */
+    KeySearchParser(boolean keepJson) {
+        this.keepJson = keepJson;
+    }
+
+    KeySearchResult parse(InputStream in) throws IOException {
+        int total = 0;
+        List<IssueRef> issues = new ArrayList<>();
+
+        try (JsonParser parser = jsonFactory.createParser(in)) {
+            expect(parser.nextToken(), JsonToken.START_OBJECT);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                if ("total".equals(field)) {
+                    total = parser.getIntValue();
+                } else if ("issues".equals(field)) {
+                    expect(parser.getCurrentToken(), JsonToken.START_ARRAY);
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        issues.add(keepJson ? parseIssueKeepingJson(parser) : parseIssue(parser, null));
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return new KeySearchResult(total, issues);
+    }
+
+    /**
+     * Copies the issue as it is, then reads it from the copy.
+     */
+    private IssueRef parseIssueKeepingJson(JsonParser parser) throws IOException {
+        ByteArrayOutputStream json = new ByteArrayOutputStream(1024);
+        try (JsonGenerator generator = jsonFactory.createGenerator(json)) {
+            generator.copyCurrentStructure(parser);
+        }
+        byte[] bytes = json.toByteArray();
+        try (JsonParser copy = jsonFactory.createParser(bytes)) {
+            copy.nextToken();
+            return parseIssue(copy, bytes);
+        }
+    }
+
+    private IssueRef parseIssue(JsonParser parser, byte[] json) throws IOException {
+        long id = 0;
+        String key = null;
+        String summary = null;
+        long parentId = 0;
+        boolean subtask = false;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            if ("id".equals(field)) {
+                id = Long.parseLong(parser.getText());
+            } else if ("key".equals(field)) {
+                key = parser.getText();
+            } else if ("fields".equals(field)) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String name = parser.getCurrentName();
+                    parser.nextToken();
+                    if ("summary".equals(name)) {
+                        summary = parser.getText();
+                    } else if ("parent".equals(name) && parser.getCurrentToken() == JsonToken.START_OBJECT) {
+                        parentId = parseId(parser);
+                    } else if ("issuetype".equals(name) && parser.getCurrentToken() == JsonToken.START_OBJECT) {
+                        subtask = parseSubtask(parser);
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+        if (key == null) {
+            throw new IOException("Issue without key in search results");
+        }
+        // Children of epics have a parent on JIRA Cloud too, but are not deleted along with it
+        return new IssueRef(id, key, summary, subtask ? parentId : 0, json);
+    }
+
+    /**
+     * {@code {"id":"10000","key":"ABC-1","fields":{..}}}
+     */
+    private long parseId(JsonParser parser) throws IOException {
+        long id = 0;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            if ("id".equals(field)) {
+                id = Long.parseLong(parser.getText());
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return id;
+    }
+
+    /**
+     * {@code {"id":"10003","name":"Sub-task","subtask":true,..}}
+     */
+    private boolean parseSubtask(JsonParser parser) throws IOException {
+        boolean subtask = false;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            if ("subtask".equals(field)) {
+                subtask = parser.getCurrentToken() == JsonToken.VALUE_TRUE;
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return subtask;
+    }
+
+    private static void expect(JsonToken actual, JsonToken expected) throws IOException {
+        if (actual != expected) {
+            throw new IOException("Unexpected search response, expected " + expected + " but got " + actual);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.expium.massdelete.remover;
+
+import java.util.List;
+
+/**
+ * Copyright 2015-2016 Expium LLC
+ * http://expium.com/
+ */
+class KeySearchResult {
+    private final int total;
+    private final List<IssueRef> issues;
+
+    KeySearchResult(int total, List<IssueRef> issues) {
+        this.total = total;
+        this.issues = issues;
+    }
+
+    int getTotal() {
+        return total;
+    }
+
+    List<IssueRef> getIssues() {
+        return issues;
+    }
+}
@@ -0,0 +1,83 @@
+package com.expium.massdelete.remover;
+
+/**
+ * Rewrites filter JQL so that each page continues after the last issue id seen, instead of skipping a number
+ * of results. This does not depend on how many issues were deleted or skipped before, and lets JIRA seek
+ * straight to the page instead of counting the offset.
+ *
+ * Copyright 2015-2016 Expium LLC
+ * http://expium.com/
+ */
+class KeysetJql {
+    private final String condition;
+    private final boolean descending;
+
+    KeysetJql(String jql, boolean descending) {
+        String condition = stripOrderBy(jql == null ? "" : jql).trim();
+        this.condition = condition.isEmpty() ? null : "(" + condition + ")";
+        this.descending = descending;
+    }
+
+    String first() {
+        return where(null);
+    }
+
+    String after(long id) {
+        return where("id " + (descending ? "<" : ">") + " " + id);
+    }
+
+    private String where(String bound) {
+        StringBuilder jql = new StringBuilder();
+        if (condition != null) {
+            jql.append(condition);
+        }
+        if (bound != null) {
+            jql.append(jql.length() > 0 ? " AND " : "").append(bound);
+        }
+        jql.append(jql.length() > 0 ? " " : "").append("ORDER BY id ").append(descending ? "DESC" : "ASC");
+        return jql.toString();
+    }
+
+    /**
+     * Removes the trailing ORDER BY clause, ignoring anything that looks like one inside a quoted string.
+     */
+    static String stripOrderBy(String jql) {
+        int orderBy = -1;
+        char quote = 0;
+        for (int i = 0; i < jql.length(); i++) {
+            char c = jql.charAt(i);
+            if (quote != 0) {
+                if (c == '\\') {
+                    i++;
+                } else if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (isOrderBy(jql, i)) {
+                orderBy = i;
+            }
+        }
+        return orderBy == -1 ? jql : jql.substring(0, orderBy);
+    }
+
+    private static boolean isOrderBy(String jql, int start) {
+        if (start > 0 && !isBoundary(jql.charAt(start - 1))) {
+            return false;
+        }
+        if (!jql.regionMatches(true, start, "order", 0, 5)) {
+            return false;
+        }
+        int i = start + 5;
+        int whitespace = i;
+        while (i < jql.length() && Character.isWhitespace(jql.charAt(i))) {
+            i++;
+        }
+        return i > whitespace && jql.regionMatches(true, i, "by", 0, 2)
+                && (i + 2 == jql.length() || isBoundary(jql.charAt(i + 2)));
+    }
+
+    private static boolean isBoundary(char c) {
+        return Character.isWhitespace(c) || c == '(' || c == ')';
+    }
+}
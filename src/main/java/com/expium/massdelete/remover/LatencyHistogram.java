@@ -0,0 +1,41 @@
+package com.expium.massdelete.remover;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Distribution of durations since the start, in microseconds with 3 significant digits. Recording is wait-free,
+ * so it can be done from every request thread.
+ *
+ * Copyright 2015-2016 Expium LLC
+ * http://expium.com/
+ */
+class LatencyHistogram {
+    private final Recorder recorder = new Recorder(3);
+    private final AtomicLong totalNanos = new AtomicLong();
+
+    // Guarded by this
+    private final Histogram total = new Histogram(3);
+    private Histogram interval;
+
+    void record(long nanos) {
+        recorder.recordValue(TimeUnit.NANOSECONDS.toMicros(nanos));
+        totalNanos.addAndGet(nanos);
+    }
+
+    /**
+     * @return copy of everything recorded so far
+     */
+    synchronized Histogram snapshot() {
+        interval = recorder.getIntervalHistogram(interval);
+        total.add(interval);
+        return total.copy();
+    }
+
+    long getTotalNanos() {
+        return totalNanos.get();
+    }
+}
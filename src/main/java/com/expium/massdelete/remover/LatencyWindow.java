@@ -0,0 +1,43 @@
+package com.expium.massdelete.remover;
+
+import java.util.Arrays;
+
+/**
+ * The most recent request latencies, for percentiles over a sliding window. Not thread-safe.
+ *
+ * Copyright 2015-2016 Expium LLC
+ * http://expium.com/
+ */
+class LatencyWindow {
+    private final long[] samples;
+    private int next;
+    private int size;
+
+    LatencyWindow(int capacity) {
+        samples = new long[capacity];
+    }
+
+    void add(long latency) {
+        samples[next] = latency;
+        next = (next + 1) % samples.length;
+        size = Math.min(size + 1, samples.length);
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the latency below which the given percentage of samples fall, or 0 if there are none
+     */
+    long percentile(double percentile) {
+        if (size == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(samples, size);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100 * size) - 1;
+        return sorted[Math.max(0, Math.min(size - 1, index))];
+    }
+}
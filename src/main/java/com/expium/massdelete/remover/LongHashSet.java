@@ -0,0 +1,134 @@
+package com.expium.massdelete.remover;
+
+/**
+ * Set of primitive longs using open addressing with linear probing. Takes 8 to 16 bytes per element, where a
+ * HashSet of boxed values takes over 50. Not thread-safe.
+ *
+ * Copyright 2015-2016 Expium LLC
+ * http://expium.com/
+ */
+class LongHashSet {
+    private static final long EMPTY = 0;
+    private static final double MAX_LOAD = 0.6;
+
+    private long[] table;
+    private int size;
+    // EMPTY marks free slots, so it is tracked on the side
+    private boolean containsEmpty;
+
+    LongHashSet() {
+        this(16);
+    }
+
+    LongHashSet(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, (int) (expectedSize / MAX_LOAD)) - 1) << 1;
+        table = new long[capacity];
+    }
+
+    int size() {
+        return size + (containsEmpty ? 1 : 0);
+    }
+
+    boolean contains(long value) {
+        if (value == EMPTY) {
+            return containsEmpty;
+        }
+        int mask = table.length - 1;
+        for (int i = index(value, mask); ; i = (i + 1) & mask) {
+            long slot = table[i];
+            if (slot == value) {
+                return true;
+            } else if (slot == EMPTY) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * @return false if the value was already present
+     */
+    boolean add(long value) {
+        if (value == EMPTY) {
+            boolean added = !containsEmpty;
+            containsEmpty = true;
+            return added;
+        }
+        if (size + 1 > table.length * MAX_LOAD) {
+            resize();
+        }
+        if (insert(table, value)) {
+            size++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Calls the visitor with each value, in no particular order.
+     */
+    void forEach(Visitor visitor) {
+        if (containsEmpty) {
+            visitor.visit(EMPTY);
+        }
+        for (long value : table) {
+            if (value != EMPTY) {
+                visitor.visit(value);
+            }
+        }
+    }
+
+    /**
+     * @return the values in no particular order
+     */
+    long[] toArray() {
+        long[] values = new long[size()];
+        int i = 0;
+        if (containsEmpty) {
+            values[i++] = EMPTY;
+        }
+        for (long value : table) {
+            if (value != EMPTY) {
+                values[i++] = value;
+            }
+        }
+        return values;
+    }
+
+    interface Visitor {
+        void visit(long value);
+    }
+
+    private void resize() {
+        long[] resized = new long[table.length * 2];
+        for (long value : table) {
+            if (value != EMPTY) {
+                insert(resized, value);
+            }
+        }
+        table = resized;
+    }
+
+    private static boolean insert(long[] table, long value) {
+        int mask = table.length - 1;
+        for (int i = index(value, mask); ; i = (i + 1) & mask) {
+            long slot = table[i];
+            if (slot == value) {
+                return false;
+            } else if (slot == EMPTY) {
+                table[i] = value;
+                return true;
+            }
+        }
+    }
+
+    private static int index(long value, int mask) {
+        // Issue numbers are sequential, spread them over the table (MurmurHash3 finalizer)
+        long h = value;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return (int) h & mask;
+    }
+}
@@ -0,0 +1,244 @@
+package com.expium.massdelete.remover;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.google.common.util.concurrent.RateLimiter;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts and timings of the removal, served in Prometheus text format by {@link MetricsEndpoint} and written as a
+ * JSON summary when the session stops.
+ *
+ * Copyright 2015-2016 Expium LLC
+ * http://expium.com/
+ */
+class Metrics implements RequestListener {
+    private static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+    private static final String[] PERCENTILE_NAMES = { "p50", "p90", "p99", "p999" };
+
+    private final List<RemovalProgress> jobs = new CopyOnWriteArrayList<>();
+    private final RateLimiter rateLimiter;
+    private final Map<Operation, OperationMetrics> operations = new EnumMap<>(Operation.class);
+    private final LatencyHistogram rateLimiterWait = new LatencyHistogram();
+    private final LatencyHistogram searchPage = new LatencyHistogram();
+
+    private volatile JiraClientAdapter client;
+    private volatile long sessionStart = System.nanoTime();
+    private volatile int removedAtStart;
+
+    Metrics(RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+        for (Operation operation : Operation.values()) {
+            operations.put(operation, new OperationMetrics());
+        }
+    }
+
+    /**
+     * Includes the connection pool state of the client.
+     */
+    void setClient(JiraClientAdapter client) {
+        this.client = client;
+    }
+
+    /**
+     * Includes the counts of a job.
+     */
+    void add(RemovalProgress progress) {
+        jobs.add(progress);
+    }
+
+    /**
+     * Starts measuring the delete rate, leaving out the time before confirmation and issues removed by a previous
+     * run of a resumed removal.
+     */
+    void sessionStarted() {
+        removedAtStart = getRemoved();
+        sessionStart = System.nanoTime();
+    }
+
+    void rateLimiterWaited(long nanos) {
+        rateLimiterWait.record(nanos);
+    }
+
+    /**
+     * @param nanos time to get a page of issues, including retries
+     */
+    void searchPageCompleted(long nanos) {
+        searchPage.record(nanos);
+    }
+
+    @Override
+    public void succeeded(Operation operation, long latencyNanos) {
+        operations.get(operation).latency.record(latencyNanos);
+    }
+
+    @Override
+    public void failed(Operation operation, long latencyNanos, Exception e) {
+        OperationMetrics metrics = operations.get(operation);
+        metrics.latency.record(latencyNanos);
+        metrics.errors.incrementAndGet();
+    }
+
+    @Override
+    public void retrying(Operation operation, long delayMillis, Exception e) {
+        operations.get(operation).retries.incrementAndGet();
+    }
+
+    double getDeletesPerSecond() {
+        double seconds = (System.nanoTime() - sessionStart) / 1e9;
+        return seconds > 0 ? (getRemoved() - removedAtStart) / seconds : 0;
+    }
+
+    private int getRemoved() {
+        int removed = 0;
+        for (RemovalProgress progress : jobs) {
+            removed += progress.getRemoved();
+        }
+        return removed;
+    }
+
+    private int getSkipped() {
+        int skipped = 0;
+        for (RemovalProgress progress : jobs) {
+            skipped += progress.getSkipped();
+        }
+        return skipped;
+    }
+
+    private int getRemaining() {
+        int remaining = 0;
+        for (RemovalProgress progress : jobs) {
+            remaining += progress.getRemaining();
+        }
+        return remaining;
+    }
+
+    void writePrometheus(Writer out) throws IOException {
+        help(out, "massdelete_request_duration_seconds", "summary",
+                "Duration of JIRA requests, including failed attempts");
+        for (Map.Entry<Operation, OperationMetrics> entry : operations.entrySet()) {
+            summary(out, "massdelete_request_duration_seconds", label(entry.getKey()), entry.getValue().latency);
+        }
+        help(out, "massdelete_request_errors_total", "counter", "JIRA requests that failed, including retried ones");
+        for (Map.Entry<Operation, OperationMetrics> entry : operations.entrySet()) {
+            sample(out, "massdelete_request_errors_total", label(entry.getKey()), entry.getValue().errors.get());
+        }
+        help(out, "massdelete_request_retries_total", "counter", "JIRA requests retried after a failure");
+        for (Map.Entry<Operation, OperationMetrics> entry : operations.entrySet()) {
+            sample(out, "massdelete_request_retries_total", label(entry.getKey()), entry.getValue().retries.get());
+        }
+
+        help(out, "massdelete_issues_removed_total", "counter", "Issues removed");
+        sample(out, "massdelete_issues_removed_total", "", getRemoved());
+        help(out, "massdelete_issues_skipped_total", "counter", "Issues that could not be removed");
+        sample(out, "massdelete_issues_skipped_total", "", getSkipped());
+        help(out, "massdelete_issues_remaining", "gauge", "Issues left to process, as of the last search");
+        sample(out, "massdelete_issues_remaining", "", getRemaining());
+        help(out, "massdelete_deletes_per_second", "gauge", "Average delete rate since the removal started");
+        sample(out, "massdelete_deletes_per_second", "", getDeletesPerSecond());
+        help(out, "massdelete_rate_limit_per_second", "gauge", "Current limit of deletes per second");
+        sample(out, "massdelete_rate_limit_per_second", "", rateLimiter.getRate());
+
+        JiraClientAdapter client = this.client;
+        if (client != null) {
+            help(out, "massdelete_http_connections", "gauge",
+                    "HTTP connections by state, pending being requests waiting for one");
+            out.write("massdelete_http_connections{state=\"leased\"} " + client.getLeasedConnections() + "\n");
+            out.write("massdelete_http_connections{state=\"available\"} " + client.getAvailableConnections() + "\n");
+            out.write("massdelete_http_connections{state=\"pending\"} " + client.getPendingRequests() + "\n");
+        }
+
+        help(out, "massdelete_rate_limiter_wait_seconds", "summary", "Time spent waiting for the rate limiter or a pause");
+        summary(out, "massdelete_rate_limiter_wait_seconds", "", rateLimiterWait);
+        help(out, "massdelete_search_page_seconds", "summary", "Time to get a page of issues, including retries");
+        summary(out, "massdelete_search_page_seconds", "", searchPage);
+    }
+
+    void writeSummary(OutputStream out) throws IOException {
+        JsonGenerator json = new JsonFactory().createGenerator(out, JsonEncoding.UTF8);
+        json.useDefaultPrettyPrinter();
+        json.writeStartObject();
+        json.writeNumberField("durationSeconds", (System.nanoTime() - sessionStart) / 1e9);
+        json.writeNumberField("removed", getRemoved());
+        json.writeNumberField("skipped", getSkipped());
+        json.writeNumberField("remaining", getRemaining());
+        json.writeNumberField("deletesPerSecond", getDeletesPerSecond());
+
+        json.writeObjectFieldStart("requests");
+        for (Map.Entry<Operation, OperationMetrics> entry : operations.entrySet()) {
+            OperationMetrics metrics = entry.getValue();
+            json.writeObjectFieldStart(label(entry.getKey()));
+            json.writeNumberField("errors", metrics.errors.get());
+            json.writeNumberField("retries", metrics.retries.get());
+            latency(json, "latencyMillis", metrics.latency);
+            json.writeEndObject();
+        }
+        json.writeEndObject();
+
+        latency(json, "rateLimiterWaitMillis", rateLimiterWait);
+        latency(json, "searchPageMillis", searchPage);
+        json.writeEndObject();
+        json.flush();
+    }
+
+    private static String label(Operation operation) {
+        return operation.name().toLowerCase();
+    }
+
+    private static void help(Writer out, String name, String type, String help) throws IOException {
+        out.write("# HELP " + name + " " + help + "\n");
+        out.write("# TYPE " + name + " " + type + "\n");
+    }
+
+    private static void sample(Writer out, String name, String operation, double value) throws IOException {
+        sample(out, name, operation, String.valueOf(value));
+    }
+
+    private static void sample(Writer out, String name, String operation, long value) throws IOException {
+        sample(out, name, operation, String.valueOf(value));
+    }
+
+    private static void sample(Writer out, String name, String operation, String value) throws IOException {
+        out.write(name + (operation.isEmpty() ? "" : "{operation=\"" + operation + "\"}") + " " + value + "\n");
+    }
+
+    private static void summary(Writer out, String name, String operation, LatencyHistogram latency)
+            throws IOException {
+        Histogram histogram = latency.snapshot();
+        String labels = operation.isEmpty() ? "" : "operation=\"" + operation + "\",";
+        for (double quantile : QUANTILES) {
+            out.write(name + "{" + labels + "quantile=\"" + quantile + "\"} "
+                    + histogram.getValueAtPercentile(quantile * 100) / 1e6 + "\n");
+        }
+        sample(out, name + "_sum", operation, latency.getTotalNanos() / 1e9);
+        sample(out, name + "_count", operation, histogram.getTotalCount());
+    }
+
+    private static void latency(JsonGenerator json, String name, LatencyHistogram latency) throws IOException {
+        Histogram histogram = latency.snapshot();
+        json.writeObjectFieldStart(name);
+        json.writeNumberField("count", histogram.getTotalCount());
+        json.writeNumberField("mean", histogram.getMean() / 1e3);
+        for (int i = 0; i < QUANTILES.length; i++) {
+            json.writeNumberField(PERCENTILE_NAMES[i], histogram.getValueAtPercentile(QUANTILES[i] * 100) / 1e3);
+        }
+        json.writeNumberField("max", histogram.getMaxValue() / 1e3);
+        json.writeEndObject();
+    }
+
+    private static class OperationMetrics {
+        final LatencyHistogram latency = new LatencyHistogram();
+        final AtomicLong errors = new AtomicLong();
+        final AtomicLong retries = new AtomicLong();
+    }
+}
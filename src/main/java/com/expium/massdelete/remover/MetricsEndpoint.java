@@ -0,0 +1,67 @@
+package com.expium.massdelete.remover;
+
+import com.google.common.base.Charsets;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+
+/**
+ * Serves {@link Metrics} at {@code /metrics} in Prometheus text format.
+ *
+ * Copyright 2015-2016 Expium LLC
+ * http://expium.com/
+ */
+class MetricsEndpoint implements Closeable {
+    private final HttpServer server;
+
+    MetricsEndpoint(InetSocketAddress address, final Metrics metrics) throws IOException {
+        server = HttpServer.create(address, 0);
+        server.createContext("/metrics", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                ByteArrayOutputStream body = new ByteArrayOutputStream();
+                try (Writer writer = new OutputStreamWriter(body, Charsets.UTF_8)) {
+                    metrics.writePrometheus(writer);
+                }
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+                exchange.sendResponseHeaders(200, body.size());
+                try (OutputStream out = exchange.getResponseBody()) {
+                    body.writeTo(out);
+                }
+            }
+        });
+        server.start();
+    }
+
+    /**
+     * @param address {@code [host:]port}, the host being localhost when omitted
+     */
+    static InetSocketAddress parseAddress(String address) {
+        int colon = address.lastIndexOf(':');
+        String host = colon == -1 ? "localhost" : address.substring(0, colon);
+        int port;
+        try {
+            port = Integer.parseInt(address.substring(colon + 1));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid port in " + address);
+        }
+        return new InetSocketAddress(host, port);
+    }
+
+    InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
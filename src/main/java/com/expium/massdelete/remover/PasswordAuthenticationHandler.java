@@ -0,0 +1,33 @@
+package com.expium.massdelete.remover;
+
+import com.atlassian.httpclient.api.Request;
+import com.atlassian.jira.rest.client.api.AuthenticationHandler;
+import com.atlassian.jira.rest.client.auth.BasicHttpAuthenticationHandler;
+import com.expium.massdelete.Options;
+
+/**
+ * Sends the user name and password with each request. Takes the password from the options when the first request
+ * is sent rather than when created, so that the client may be created while the password is still being typed.
+ *
+ * Copyright 2015-2016 Expium LLC
+ * http://expium.com/
+ */
+class PasswordAuthenticationHandler implements AuthenticationHandler {
+    private final Options options;
+
+    private volatile BasicHttpAuthenticationHandler basic;
+
+    PasswordAuthenticationHandler(Options options) {
+        this.options = options;
+    }
+
+    @Override
+    public void configure(Request request) {
+        BasicHttpAuthenticationHandler basic = this.basic;
+        if (basic == null) {
+            basic = new BasicHttpAuthenticationHandler(options.user, options.password);
+            this.basic = basic;
+        }
+        basic.configure(request);
+    }
+}
@@ -0,0 +1,39 @@
+package com.expium.massdelete.remover;
+
+import java.util.List;
+
+/**
+ * Deletes each issue with a request of its own, run by the delete engine.
+ *
+ * Copyright 2015-2016 Expium LLC
+ * http://expium.com/
+ */
+class PerIssueDeleteStrategy implements DeleteStrategy {
+    private final RemovalListener ui;
+    private final DeleteEngine engine;
+    private final Throttle throttle;
+
+    PerIssueDeleteStrategy(RemovalListener ui, DeleteEngine engine, Throttle throttle) {
+        this.ui = ui;
+        this.engine = engine;
+        this.throttle = throttle;
+    }
+
+    @Override
+    public int delete(List<IssueRef> issues, Listener listener) throws InterruptedException {
+        int started = 0;
+        for (IssueRef issue : issues) {
+            if (listener.isStopping()) {
+                break;
+            }
+
+            throttle.acquire(1);
+            ui.removing(issue);
+            if (listener.deleting(issue)) {
+                engine.submit(issue, listener);
+            }
+            started++;
+        }
+        return started;
+    }
+}
@@ -0,0 +1,156 @@
+package com.expium.massdelete.remover;
+
+import com.google.common.base.Charsets;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+
+/**
+ * The rate and parallelism allowed at times of the day, for example lower during business hours.
+ * <p>
+ * Schedule files list one period per line, as {@code HH:MM-HH:MM <rate> [<parallelism>]}, in local time. A period
+ * ending before it starts goes on past midnight, one ending when it starts lasts the whole day. A rate of 0 pauses
+ * deleting. Where periods overlap, the first one
+ * listed applies, and outside of all of them the rate and parallelism given by the options do. Empty lines and
+ * lines starting with # are ignored.
+ *
+ * Copyright 2015-2016 Expium LLC
+ * http://expium.com/
+ */
+class RateSchedule {
+    private static final int MINUTES_PER_DAY = 24 * 60;
+
+    private final List<Period> periods;
+
+    private RateSchedule(List<Period> periods) {
+        this.periods = periods;
+    }
+
+    static RateSchedule read(Path file) throws IOException {
+        List<Period> periods = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, Charsets.UTF_8)) {
+            String line;
+            int number = 0;
+            while ((line = reader.readLine()) != null) {
+                number++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                Period period = parse(line);
+                if (period == null) {
+                    throw new IOException("Line " + number + " of " + file
+                            + " is not \"HH:MM-HH:MM <rate> [<parallelism>]\"");
+                }
+                periods.add(period);
+            }
+        }
+        return new RateSchedule(periods);
+    }
+
+    /**
+     * @return the period that applies at the time, or null if none does
+     */
+    Period get(Calendar time) {
+        int minute = time.get(Calendar.HOUR_OF_DAY) * 60 + time.get(Calendar.MINUTE);
+        for (Period period : periods) {
+            if (period.includes(minute)) {
+                return period;
+            }
+        }
+        return null;
+    }
+
+    private static Period parse(String line) {
+        String[] parts = line.split("\\s+");
+        if (parts.length < 2 || parts.length > 3) {
+            return null;
+        }
+        int dash = parts[0].indexOf('-');
+        if (dash == -1) {
+            return null;
+        }
+        int start = parseTime(parts[0].substring(0, dash));
+        int end = parseTime(parts[0].substring(dash + 1));
+        if (start == -1 || end == -1) {
+            return null;
+        }
+        try {
+            double rate = Double.parseDouble(parts[1]);
+            int parallelism = parts.length == 3 ? Integer.parseInt(parts[2]) : 0;
+            if (rate < 0 || parallelism < 0) {
+                return null;
+            }
+            return new Period(start, end, rate, parallelism);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return minutes since midnight, or -1 if not HH:MM
+     */
+    private static int parseTime(String value) {
+        int colon = value.indexOf(':');
+        if (colon == -1) {
+            return -1;
+        }
+        try {
+            int hours = Integer.parseInt(value.substring(0, colon));
+            int minutes = Integer.parseInt(value.substring(colon + 1));
+            if (hours < 0 || minutes < 0 || minutes > 59 || hours * 60 + minutes > MINUTES_PER_DAY) {
+                return -1;
+            }
+            return hours * 60 + minutes;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    static class Period {
+        private final int start;
+        private final int end;
+        private final double rate;
+        private final int parallelism;
+
+        Period(int start, int end, double rate, int parallelism) {
+            this.start = start;
+            this.end = end;
+            this.rate = rate;
+            this.parallelism = parallelism;
+        }
+
+        boolean includes(int minute) {
+            if (start == end) {
+                return true;
+            } else if (start < end) {
+                return minute >= start && minute < end;
+            }
+            return minute >= start || minute < end;
+        }
+
+        /**
+         * @return max issues to delete per second, 0 to pause
+         */
+        double getRate() {
+            return rate;
+        }
+
+        /**
+         * @return max deletions in flight, 0 if not limited
+         */
+        int getParallelism() {
+            return parallelism;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%02d:%02d-%02d:%02d", start / 60, start % 60, end / 60, end % 60);
+        }
+    }
+}
@@ -0,0 +1,373 @@
+package com.expium.massdelete.remover;
+
+import com.expium.massdelete.Options;
+import com.expium.massdelete.PagingMode;
+import com.expium.massdelete.StopReason;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Removes the issues matching one query. Several jobs may run at once, sharing the client, the delete workers
+ * and the rate limit.
+ *
+ * Copyright 2015-2016 Expium LLC
+ * http://expium.com/
+ */
+class RemovalJob {
+    private final String name;
+    private final String jql;
+    private final RemovalListener ui;
+    private final Options options;
+    private final JiraClientAdapter client;
+    private final DeleteStrategy strategy;
+    private final AdaptiveRateController rateController;
+    private final IssueArchive archive;
+    private final Metrics metrics;
+    private final RemovalProgress progress;
+    private final ThroughputEstimator estimator = new ThroughputEstimator();
+    private final SearchStage searchStage;
+    private final SubtaskPlanner subtasks = new SubtaskPlanner();
+
+    private Journal journal;
+    private Checkpoints checkpoints;
+    private KeySearchResult first;
+
+    // Deletions of this job in flight, the worker pool may be running others' too. Guarded by this.
+    private int inFlight;
+
+    /**
+     * @param rateController null unless adapting the rate
+     * @param archive null unless archiving
+     */
+    RemovalJob(String name, String jql, RemovalProgress progress, RemovalListener ui, Options options, JiraClientAdapter client,
+            DeleteStrategy strategy, AdaptiveRateController rateController, IssueArchive archive, Metrics metrics) {
+        this.name = name;
+        this.jql = jql;
+        this.progress = progress;
+        this.ui = ui;
+        this.options = options;
+        this.client = client;
+        this.strategy = strategy;
+        this.rateController = rateController;
+        this.archive = archive;
+        this.metrics = metrics;
+        this.searchStage = new SearchStage(client, jql, options.paging, progress, metrics, options.queryBatchSize,
+                options.prefetch);
+        metrics.add(progress);
+    }
+
+    void openJournal(Path file) throws IOException {
+        journal = Journal.open(ui, file, jql);
+        if (journal.isResumed()) {
+            progress.restore(journal.getRemoved(), journal.getSkippedKeys());
+            if (journal.getCursor() != -1) {
+                searchStage.resumeAfter(journal.getCursor());
+            }
+            ui.resuming(progress.getRemoved(), progress.getSkipped());
+        }
+        if (options.paging != PagingMode.OFFSET) {
+            checkpoints = new Checkpoints(journal, archive);
+        }
+    }
+
+    /**
+     * Searches for the first page of issues.
+     *
+     * @return false if the search failed
+     */
+    boolean search() {
+        try {
+            first = searchStage.first();
+            return true;
+        } catch (Exception e) {
+            // Already logged and retried by the client
+            return false;
+        }
+    }
+
+    /**
+     * @return number of issues left to process, as of the first search
+     */
+    int getTotal() {
+        return first.getTotal();
+    }
+
+    boolean isResumed() {
+        return journal != null && journal.isResumed();
+    }
+
+    /**
+     * Records that there is nothing left to do without running.
+     */
+    void complete() throws IOException {
+        if (journal != null) {
+            journal.complete();
+        }
+    }
+
+    StopReason run() throws InterruptedException, IOException {
+        estimator.start(progress.getProcessed());
+        try {
+            searchStage.start(first);
+            StopReason reason = removeAll();
+            if (reason == StopReason.COMPLETED) {
+                if (journal != null) {
+                    awaitIdle();
+                    journal.complete();
+                }
+                ui.info("Completed");
+            } else if (reason == StopReason.NOTHING_REMOVED_IN_BATCH) {
+                ui.warn("No issues removed or skipped in the batch. Make sure the filter defines a stable order. Exiting.");
+            }
+            return reason;
+        } finally {
+            searchStage.stop();
+        }
+    }
+
+    void close() {
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    String getName() {
+        return name;
+    }
+
+    String getJql() {
+        return jql;
+    }
+
+    RemovalProgress getProgress() {
+        return progress;
+    }
+
+    private StopReason removeAll() throws InterruptedException {
+        final AtomicBoolean failed = new AtomicBoolean();
+
+        while (true) {
+            long searchStart = System.nanoTime();
+            final SearchPage page = searchStage.next();
+            estimator.searched(System.nanoTime() - searchStart);
+            if (page.isLast()) {
+                awaitIdle();
+                return page.getStopReason();
+            }
+
+            DeleteEngine.Listener listener = new DeleteEngine.Listener() {
+                @Override
+                public void removed(IssueRef issue) {
+                    if (journal != null) {
+                        journal.removed(issue.getKey());
+                    }
+                    progress.removed(issue.getKey());
+                    processed(page);
+                }
+
+                @Override
+                public void failed(IssueRef issue, Exception e) {
+                    if (journal != null) {
+                        journal.skipped(issue.getKey());
+                    }
+                    progress.skipped(issue.getKey());
+                    failed.set(true);
+                    processed(page);
+                }
+            };
+            if (checkpoints != null) {
+                checkpoints.started(page);
+            }
+
+            progress.setRemaining(
+                    page.getRemainingAtSearch() - (progress.getProcessed() - page.getProcessedAtSearch()));
+            logStatus();
+            delete(page.getIssues(), listener, failed);
+
+            if (isWriteFailed()) {
+                // Already logged
+                awaitIdle();
+                return StopReason.ERROR;
+            }
+            if (failed.get() && !options.skipErrors) {
+                awaitIdle();
+                ui.info("Stopping on error. Please use the -s (or --skip-errors) option to skip errors.");
+                return StopReason.ERROR;
+            }
+        }
+    }
+
+    /**
+     * Deletes the issues in the order planned, reporting the subtasks left out along with their parents. Archives
+     * each right before deleting it.
+     *
+     * @param failed set by the listener when an issue fails to delete
+     */
+    private void delete(List<IssueRef> issues, final DeleteEngine.Listener listener, final AtomicBoolean failed)
+            throws InterruptedException {
+        synchronized (this) {
+            inFlight += issues.size();
+        }
+        DeleteStrategy.Listener released = new DeleteStrategy.Listener() {
+            @Override
+            public void removed(IssueRef issue) {
+                try {
+                    listener.removed(issue);
+                } finally {
+                    release(1);
+                }
+                subtasks.removed(issue);
+            }
+
+            @Override
+            public void failed(IssueRef issue, Exception e) {
+                if (issue.isSubtask() && JiraErrors.statusCode(e) == 404) {
+                    // Deleted along with its parent in the meantime, by another job or a previous run
+                    removed(issue);
+                    return;
+                }
+                try {
+                    listener.failed(issue, e);
+                } finally {
+                    release(1);
+                }
+                subtasks.failed(issue);
+            }
+
+            @Override
+            public boolean deleting(IssueRef issue) throws InterruptedException {
+                if (archive == null) {
+                    return true;
+                }
+                try {
+                    archive.add(issue);
+                    return true;
+                } catch (IOException e) {
+                    failed(issue, e);
+                    return false;
+                }
+            }
+
+            @Override
+            public boolean isStopping() {
+                return (failed.get() && !options.skipErrors) || isWriteFailed();
+            }
+        };
+
+        List<IssueRef> alreadyRemoved = new ArrayList<>();
+        List<IssueRef> planned = subtasks.plan(issues, released, alreadyRemoved);
+        if (archive != null) {
+            archiveLeftOut(issues, planned);
+        }
+        for (IssueRef issue : alreadyRemoved) {
+            released.removed(issue);
+        }
+        int started = 0;
+        try {
+            started = strategy.delete(planned, released);
+        } finally {
+            // Those not started, and the subtasks waiting for them
+            int notStarted = planned.size() - started;
+            for (IssueRef issue : planned.subList(started, planned.size())) {
+                notStarted += subtasks.abandon(issue);
+            }
+            release(notStarted);
+        }
+    }
+
+    /**
+     * Archives the subtasks that are not deleted on their own, but along with their parents.
+     */
+    private void archiveLeftOut(List<IssueRef> issues, List<IssueRef> planned) throws InterruptedException {
+        if (planned.size() == issues.size()) {
+            return;
+        }
+        Set<IssueRef> deleting = new HashSet<>(planned);
+        for (IssueRef issue : issues) {
+            if (!deleting.contains(issue)) {
+                try {
+                    archive.add(issue);
+                } catch (IOException e) {
+                    // Already logged, the removal stops after this page
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return true if writing the archive or the journal failed, in which case nothing is to be deleted anymore
+     */
+    private boolean isWriteFailed() {
+        return (archive != null && archive.isFailed()) || (journal != null && journal.isFailed());
+    }
+
+    private synchronized void release(int count) {
+        inFlight -= count;
+        notifyAll();
+    }
+
+    /**
+     * Blocks until all deletions submitted by this job have completed.
+     */
+    private synchronized void awaitIdle() throws InterruptedException {
+        while (inFlight > 0) {
+            wait();
+        }
+    }
+
+    private void processed(SearchPage page) {
+        if (checkpoints != null) {
+            checkpoints.processed(page);
+        }
+    }
+
+    private void logStatus() {
+        logStatus(ui, progress, estimator, client, rateController);
+    }
+
+    /**
+     * Reports the progress, the estimated completion and the state of the connections and the rate.
+     *
+     * @param rateController null unless adapting the rate
+     */
+    static void logStatus(RemovalListener ui, RemovalProgress progress, ThroughputEstimator estimator,
+            JiraClientAdapter client, AdaptiveRateController rateController) {
+        if (estimator.sample(progress.getProcessed())) {
+            long now = System.currentTimeMillis();
+            int remaining = progress.getRemaining();
+            Date earliest = null;
+            Date latest = null;
+            if (estimator.hasBounds()) {
+                earliest = completion(now, remaining, estimator.getRateHigh());
+                latest = completion(now, remaining, estimator.getRateLow());
+            }
+            ui.estimateAfterBatchCompletion(estimator.getCurrentRate(), estimator.getRate(),
+                    completion(now, remaining, estimator.getRate()), earliest, latest);
+        }
+
+        ui.progress(progress.getRemoved(), progress.getSkipped(), progress.getRemaining());
+        ui.connectionPool(client.getLeasedConnections(), client.getAvailableConnections(),
+                client.getPendingRequests());
+        if (rateController != null) {
+            ui.rateAdjusted(rateController.getRate(), rateController.getLimit(), rateController.getLatencyMillis());
+        }
+    }
+
+    /**
+     * @return null if nothing is getting processed
+     */
+    static Date completion(long now, int remaining, double rate) {
+        if (rate <= 0) {
+            return null;
+        }
+        return new Date(now + (long) (remaining / rate * 1000));
+    }
+}
@@ -0,0 +1,90 @@
+package com.expium.massdelete.remover;
+
+import com.expium.massdelete.StopReason;
+
+import java.util.Date;
+
+/**
+ * Told what the removal does, to show it to the user or report it otherwise. The console {@code UI} is one,
+ * which is all the removal needs of it, so that it may run without a console, in a process that runs several
+ * removals one after another.
+ * <p>
+ * Methods are called from the threads doing the work, and those reporting the status are called after each page,
+ * so they should return quickly.
+ *
+ * Copyright 2015-2016 Expium LLC
+ * http://expium.com/
+ */
+public interface RemovalListener {
+    void connectivityVerified();
+
+    void jiraRequestFailed(String operation, Throwable e);
+
+    /**
+     * @return true to go on with removing the issues
+     */
+    boolean confirmRemoval(int total);
+
+    void resuming(int removed, int skipped);
+
+    /**
+     * Called right before the issue is deleted.
+     */
+    void removing(IssueRef issue);
+
+    void progress(int removed, int skipped, int remaining);
+
+    /**
+     * @param earliestCompletion null if not known yet
+     * @param latestCompletion null if not known yet or the rate varies too much to tell
+     */
+    void estimateAfterBatchCompletion(double currentRate, double averageRate, Date estimatedCompletion,
+            Date earliestCompletion, Date latestCompletion);
+
+    void connectionPool(int leased, int available, int pending);
+
+    void rateAdjusted(double rate, int inFlight, long latencyMillis);
+
+    /**
+     * @param probeMillis median latency of probing JIRA, -1 if not probing
+     */
+    void loadAdjusted(double rate, int inFlight, long probeMillis);
+
+    void jobStopped(String job, int removed, int skipped, int remaining);
+
+    void sessionStopped(int removed, int skipped, int remaining, long sessionDuration);
+
+    /**
+     * @param owner null if no process took the shard yet
+     */
+    void shardStatus(int shard, String state, String owner, int doneBlocks, int blocks, int removed, int skipped);
+
+    void searchMeasured(int pages, double pagesPerSecond, long bytesPerPage, double issuesPerSecond);
+
+    void deleteLatencyMeasured(int probes, long medianMillis, long p90Millis);
+
+    /**
+     * @param seconds projected time for each parallelism (rows) and rate (columns)
+     */
+    void projection(int total, int[] parallelism, double[] rates, long[][] seconds);
+
+    void info(String msg, Object... args);
+
+    void warn(String msg, Object... args);
+
+    void error(String msg);
+
+    void error(String msg, Exception e);
+
+    void interrupted();
+
+    /**
+     * Writes out what was not written yet. Called when the removal stops, and again when the process exits.
+     */
+    void close();
+
+    /**
+     * Called once the removal stopped, after the statistics of the session.
+     */
+    void stopped(StopReason reason);
+}
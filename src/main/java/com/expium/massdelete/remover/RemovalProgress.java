@@ -0,0 +1,133 @@
+package com.expium.massdelete.remover;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counters and key sets shared by the search stage, the delete workers and the main thread of one job.
+ *
+ * Copyright 2015-2016 Expium LLC
+ * http://expium.com/
+ */
+class RemovalProgress {
+    private final IssueKeySet skippedKeys = new IssueKeySet();
+    // Keys handed over to the delete stage that are not removed or skipped yet
+    private final Set<String> pendingKeys = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    // Keys taken by any of the jobs running at once, null if there is only one
+    private final IssueKeySet claimedKeys;
+
+    private final AtomicInteger skipped = new AtomicInteger();
+    private final AtomicInteger removed = new AtomicInteger();
+    private final AtomicInteger remaining = new AtomicInteger();
+
+    RemovalProgress() {
+        this(null);
+    }
+
+    /**
+     * @param claimedKeys shared by jobs running at once, so that an issue matched by several is only taken by one
+     */
+    RemovalProgress(IssueKeySet claimedKeys) {
+        this.claimedKeys = claimedKeys;
+    }
+
+    /**
+     * Continues counting from a previous session.
+     */
+    void restore(int removedBefore, Iterable<String> skippedBefore) {
+        removed.addAndGet(removedBefore);
+        for (String key : skippedBefore) {
+            if (skippedKeys.add(key)) {
+                skipped.incrementAndGet();
+            }
+        }
+    }
+
+    int getSkipped() {
+        return skipped.get();
+    }
+
+    int getRemoved() {
+        return removed.get();
+    }
+
+    int getProcessed() {
+        return removed.get() + skipped.get();
+    }
+
+    int getRemaining() {
+        return remaining.get();
+    }
+
+    void setRemaining(int value) {
+        remaining.set(Math.max(0, value));
+    }
+
+    int getPending() {
+        return pendingKeys.size();
+    }
+
+    boolean isSkipped(String key) {
+        return skippedKeys.contains(key);
+    }
+
+    /**
+     * @return false if the key is already pending, or taken by another job
+     */
+    boolean markPending(String key) {
+        if (!pendingKeys.add(key)) {
+            return false;
+        }
+        if (claimedKeys != null && !claimedKeys.add(key)) {
+            pendingKeys.remove(key);
+            return false;
+        }
+        return true;
+    }
+
+    void removed(String key) {
+        removed.incrementAndGet();
+        remaining.decrementAndGet();
+        release(key);
+    }
+
+    void skipped(String key) {
+        skippedKeys.add(key);
+        skipped.incrementAndGet();
+        remaining.decrementAndGet();
+        release(key);
+    }
+
+    private synchronized void release(String key) {
+        pendingKeys.remove(key);
+        notifyAll();
+    }
+
+    /**
+     * Waits until at most {@code count} keys are pending, or the timeout elapses.
+     *
+     * @return true if the condition is met
+     */
+    synchronized boolean awaitPendingAtMost(int count, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (pendingKeys.size() > count) {
+            long wait = deadline - System.currentTimeMillis();
+            if (wait <= 0) {
+                return false;
+            }
+            wait(wait);
+        }
+        return true;
+    }
+
+    /**
+     * Waits until a pending key is removed or skipped, or the timeout elapses.
+     */
+    synchronized void awaitRelease(long timeoutMillis) throws InterruptedException {
+        if (!pendingKeys.isEmpty()) {
+            wait(timeoutMillis);
+        }
+    }
+}
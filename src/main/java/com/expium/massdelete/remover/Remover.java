@@ -1,119 +1,627 @@
 package com.expium.massdelete.remover;
 
 import com.atlassian.jira.rest.client.api.domain.Filter;
-import com.atlassian.jira.rest.client.api.domain.Issue;
-import com.atlassian.jira.rest.client.api.domain.SearchResult;
+import com.expium.massdelete.DeleteMode;
 import com.expium.massdelete.Options;
+import com.expium.massdelete.PagingMode;
 import com.expium.massdelete.StopReason;
-import com.expium.massdelete.ui.UI;
 import com.google.common.base.Predicate;
+import com.google.common.base.Throwables;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.MDC;
 
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Date;
-import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Copyright 2015-2016 Expium LLC
  * http://expium.com/
  */
 public class Remover {
-    private final UI ui;
+    private final RemovalListener ui;
     private final Options options;
     private final RateLimiter rateLimiter;
+    private final Metrics metrics;
+    private final Throttle throttle;
+    // Null to create the client when needed
+    private final Future<JiraClientAdapter> pendingClient;
 
     private final Thread LOG_SESSION_STATS = new Thread(new Runnable() {
         @Override
         public void run() {
             long sessionDuration = (System.currentTimeMillis() - sessionStart) / 1000;
+            int removed = 0;
+            int skipped = 0;
+            int remaining = 0;
+            for (Map.Entry<String, RemovalProgress> entry : sessionProgress.entrySet()) {
+                RemovalProgress progress = entry.getValue();
+                if (sessionProgress.size() > 1) {
+                    ui.jobStopped(entry.getKey(), progress.getRemoved(), progress.getSkipped(),
+                            progress.getRemaining());
+                }
+                removed += progress.getRemoved();
+                skipped += progress.getSkipped();
+                remaining += progress.getRemaining();
+            }
             ui.sessionStopped(removed, skipped, remaining, sessionDuration);
+            if (options.metricsSummary != null) {
+                writeMetricsSummary();
+            }
+            // Before the journals, which record checkpoints once the archive is synced
+            if (archive != null) {
+                archive.close();
+            }
+            for (RemovalJob job : jobs) {
+                job.close();
+            }
+            ui.close();
         }
     });
 
-    private Set<String> skippedKeys = new HashSet<>();
+    private final List<RemovalJob> jobs = new ArrayList<>();
+    // By job name, for the statistics at the end
+    private final Map<String, RemovalProgress> sessionProgress = new LinkedHashMap<>();
 
-    private int skipped = 0;
-    private int removed = 0;
-    private int remaining;
+    private AdaptiveRateController rateController;
+    // Null if there is none
+    private RateSchedule schedule;
+    // Null unless archiving
+    private IssueArchive archive;
 
     private long sessionStart;
-    private long batchStart;
 
-    public Remover(UI ui, Options options) {
+    public Remover(RemovalListener ui, Options options) {
+        this(ui, options, null);
+    }
+
+    /**
+     * @param client being created, as by {@link JiraClientAdapter#createInBackground}, for the same options
+     */
+    public Remover(RemovalListener ui, Options options, Future<JiraClientAdapter> client) {
         this.ui = ui;
+        this.pendingClient = client;
         this.options = options;
         this.rateLimiter = RateLimiter.create(options.maxIssuesPerSecond);
+        this.metrics = new Metrics(rateLimiter);
+        this.throttle = new Throttle(rateLimiter, metrics);
+    }
+
+    /**
+     * Runs the removal, or whatever else the options ask for, to the end. Returns rather than exiting, so that
+     * removals may run one after another in the same process.
+     */
+    public StopReason go() {
+        StopReason reason = run();
+        endSession();
+        ui.stopped(reason);
+        return reason;
     }
 
-    public void go() {
-        try (JiraClientAdapter client = new JiraClientAdapter(ui, options)) {
+    private StopReason run() {
+        if (options.rateSchedule != null) {
+            try {
+                schedule = RateSchedule.read(options.rateSchedule.toPath());
+            } catch (IOException e) {
+                ui.error("Unable to read the rate schedule: " + e.getMessage(), e);
+                return StopReason.ERROR;
+            }
+        }
+        if (options.fromSnapshot != null) {
+            return removeSnapshot();
+        }
+
+        List<Job> definitions;
+        try {
+            definitions = Job.fromOptions(options);
+        } catch (IOException e) {
+            ui.error("Unable to read the job file: " + e.getMessage(), e);
+            return StopReason.ERROR;
+        }
+        if (definitions.isEmpty()) {
+            ui.error("The job file lists no filters or queries.");
+            return StopReason.ERROR;
+        }
+        if (definitions.size() > 1 && options.paging == PagingMode.OFFSET) {
+            ui.error("Paging by offset is only supported with a single filter.");
+            return StopReason.ERROR;
+        }
+
+        try (MetricsEndpoint metricsEndpoint = openMetricsEndpoint();
+                JiraClientAdapter client = openClient();
+                DeleteEngine workers = DeleteEngine.create(options.engine, client, options.parallelism)) {
+            client.addListener(metrics);
+            metrics.setClient(client);
+            if (options.adaptive) {
+                rateController = new AdaptiveRateController(rateLimiter, workers, options.maxIssuesPerSecond,
+                        options.targetLatencyMillis);
+                client.addListener(rateController);
+            }
+
             if (!verifyConnectivity(client)) {
-                ui.stopped(StopReason.NO_CONNECTION_TO_JIRA);
-                return;
+                return StopReason.NO_CONNECTION_TO_JIRA;
             }
 
-            Filter filter = findFilter(client, options.filter);
-            if (filter == null) {
-                ui.stopped(StopReason.FILTER_NOT_FOUND);
-                return;
+            DeleteStrategy strategy = createStrategy(client, workers);
+            if (options.archive != null) {
+                archive = new IssueArchive(ui, options.archive.toPath());
+            }
+            if (!createJobs(client, strategy, definitions)) {
+                return StopReason.FILTER_NOT_FOUND;
             }
 
-            SearchResult searchResults = search(client, filter);
-            if (searchResults == null) {
-                ui.stopped(StopReason.ISSUE_SEARCH_FAILED);
-                return;
+            if (options.dryRun != null) {
+                boolean searched = new DryRun(ui, options, client).run(jobs);
+                return searched ? StopReason.DRY_RUN_COMPLETED : StopReason.ISSUE_SEARCH_FAILED;
+            }
+            if (options.snapshot != null) {
+                List<String> jqls = new ArrayList<>();
+                for (RemovalJob job : jobs) {
+                    jqls.add(job.getJql());
+                }
+                boolean searched = new SnapshotSearch(ui, options, client).run(jqls);
+                return searched ? StopReason.SNAPSHOT_TAKEN : StopReason.ISSUE_SEARCH_FAILED;
+            }
+
+            int total = 0;
+            boolean resumed = true;
+            List<RemovalJob> started = new ArrayList<>();
+            for (int i = 0; i < jobs.size(); i++) {
+                RemovalJob job = jobs.get(i);
+                enterJob(job);
+                try {
+                    if (options.journal != null) {
+                        job.openJournal(journalFile(i));
+                    }
+                    if (!job.search()) {
+                        return StopReason.ISSUE_SEARCH_FAILED;
+                    }
+                    if (job.getTotal() == 0) {
+                        job.complete();
+                        if (jobs.size() > 1) {
+                            ui.info("The filter matched no issues.");
+                        }
+                        continue;
+                    }
+                    ui.info("The filter matches {} issues.", job.getTotal());
+                    total += job.getTotal();
+                    resumed &= job.isResumed();
+                    started.add(job);
+                } finally {
+                    leaveJob();
+                }
             }
 
-            int total = searchResults.getTotal();
             if (total == 0) {
-                ui.info("The filter matched no issues. Nothing to do - exiting.");
-                ui.stopped(StopReason.NO_MATCHING_ISSUES);
-                return;
+                ui.info("The {} matched no issues. Nothing to do - exiting.",
+                        jobs.size() > 1 ? "filters" : "filter");
+                return StopReason.NO_MATCHING_ISSUES;
             }
 
-            ui.info("The filter matches {} issues.", total);
-            if (!ui.confirmRemoval(total)) {
-                ui.stopped(StopReason.USER_DID_NOT_CONFIRM_REMOVAL);
-                return;
+            if (jobs.size() > 1) {
+                ui.info("The filters match {} issues in total, fewer if they overlap.", total);
+            }
+            if (resumed) {
+                // Confirmed when the removal was started
+                ui.info("Resuming the removal recorded in {}.", options.journal);
+            } else {
+                StopReason refused = confirmRemoval(total);
+                if (refused != null) {
+                    return refused;
+                }
             }
 
             sessionStart = System.currentTimeMillis();
+            metrics.sessionStarted();
             Runtime.getRuntime().addShutdownHook(LOG_SESSION_STATS);
-            while (searchResults.getTotal() > 0) {
-                int skippedBefore = skipped;
-                int removedBefore = removed;
-                boolean success = removeBatch(client, searchResults);
-                if (!success) {
-                    ui.stopped(StopReason.ERROR);
-                    break;
-                } else if (remaining == 0) {
-                    ui.info("Completed");
-                    ui.stopped(StopReason.COMPLETED);
-                    break;
-                } else if (skipped == skippedBefore && removed == removedBefore) {
-                    ui.warn("No issues removed or skipped in the batch. Make sure the filter defines a stable order. Exiting.");
-                    ui.stopped(StopReason.NOTHING_REMOVED_IN_BATCH);
-                    break;
+
+            try (ServerLoadMonitor loadMonitor = startLoadMonitor(client, workers)) {
+                return started.size() == 1 ? started.get(0).run() : runConcurrently(started);
+            } catch (InterruptedException e) {
+                ui.interrupted();
+                return StopReason.INTERRUPTED;
+            }
+        } catch (IOException e) {
+            ui.error("An error has occurred. See log for detail.");
+            return StopReason.ERROR;
+        }
+    }
+
+    /**
+     * Removes the issues listed in a snapshot, taken by an earlier run with the same or other options. With shards,
+     * removes those not taken by other processes.
+     */
+    private StopReason removeSnapshot() {
+        SnapshotFile snapshot;
+        ShardManifest manifest = null;
+        try {
+            snapshot = SnapshotFile.open(options.fromSnapshot.toPath());
+            if (options.shardStatus) {
+                return showShardStatus(snapshot);
+            }
+            if (options.shards > 0) {
+                manifest = ShardManifest.open(options.fromSnapshot.toPath(), snapshot, options.shards);
+            }
+        } catch (IOException e) {
+            ui.error("Unable to read the snapshot: " + e.getMessage(), e);
+            return StopReason.ERROR;
+        }
+        if (snapshot.getCount() == 0) {
+            ui.info("The snapshot lists no issues. Nothing to do - exiting.");
+            return StopReason.NO_MATCHING_ISSUES;
+        }
+
+        try (MetricsEndpoint metricsEndpoint = openMetricsEndpoint();
+                JiraClientAdapter client = openClient();
+                DeleteEngine workers = DeleteEngine.create(options.engine, client, options.parallelism)) {
+            client.addListener(metrics);
+            metrics.setClient(client);
+            if (options.adaptive) {
+                rateController = new AdaptiveRateController(rateLimiter, workers, options.maxIssuesPerSecond,
+                        options.targetLatencyMillis);
+                client.addListener(rateController);
+            }
+
+            if (!verifyConnectivity(client)) {
+                return StopReason.NO_CONNECTION_TO_JIRA;
+            }
+
+            ui.info("The snapshot taken {} lists {} issues.", new Date(snapshot.getTaken()), snapshot.getCount());
+            if (manifest != null) {
+                ui.info("Removing them in {} shards, together with any other processes given the same snapshot.",
+                        manifest.getShards());
+            }
+            StopReason refused = confirmRemoval((int) snapshot.getCount());
+            if (refused != null) {
+                return refused;
+            }
+
+            RemovalProgress progress = new RemovalProgress();
+            sessionProgress.put(options.fromSnapshot.getName(), progress);
+            sessionStart = System.currentTimeMillis();
+            metrics.sessionStarted();
+            Runtime.getRuntime().addShutdownHook(LOG_SESSION_STATS);
+
+            SnapshotRemoval removal = new SnapshotRemoval(progress, ui, options, client, workers, throttle,
+                    rateController, metrics);
+            try (ServerLoadMonitor loadMonitor = startLoadMonitor(client, workers)) {
+                return manifest == null ? removal.run(snapshot)
+                        : removeShards(manifest, snapshot, removal, progress);
+            } catch (InterruptedException e) {
+                ui.interrupted();
+                return StopReason.INTERRUPTED;
+            }
+        } catch (IOException e) {
+            ui.error("An error has occurred. See log for detail.");
+            return StopReason.ERROR;
+        }
+    }
+
+    /**
+     * Waits for the client created while the password was asked for, if there is one, or creates it.
+     */
+    private JiraClientAdapter openClient() throws IOException {
+        if (pendingClient == null) {
+            return new JiraClientAdapter(ui, options);
+        }
+        try {
+            return pendingClient.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while creating the JIRA client", e);
+        } catch (ExecutionException e) {
+            // Thrown as if the client was created here
+            Throwables.propagateIfPossible(e.getCause(), IOException.class);
+            throw new IOException("Unable to create the JIRA client", e.getCause());
+        }
+    }
+
+    /**
+     * Without asking if the count of issues to remove was given in advance.
+     *
+     * @return null if confirmed, otherwise why not
+     */
+    private StopReason confirmRemoval(int total) {
+        if (options.yesExpectedCount == null) {
+            return ui.confirmRemoval(total) ? null : StopReason.USER_DID_NOT_CONFIRM_REMOVAL;
+        }
+        if (total != options.yesExpectedCount) {
+            ui.error("Expected " + options.yesExpectedCount + " issues to remove, but found " + total
+                    + ". Nothing removed.");
+            return StopReason.UNEXPECTED_ISSUE_COUNT;
+        }
+        ui.info("Removing the {} issues as expected.", total);
+        return null;
+    }
+
+    /**
+     * Logs the statistics and closes the journals right away rather than when the process exits, if the removal
+     * started.
+     */
+    private void endSession() {
+        try {
+            if (!Runtime.getRuntime().removeShutdownHook(LOG_SESSION_STATS)) {
+                return;
+            }
+        } catch (IllegalStateException e) {
+            // Exiting already, the hook runs anyway
+            return;
+        }
+        LOG_SESSION_STATS.run();
+    }
+
+    /**
+     * Takes shards one after another until there are none left, keeping the lock of the current one alive.
+     */
+    private StopReason removeShards(ShardManifest manifest, SnapshotFile snapshot, final SnapshotRemoval removal,
+            final RemovalProgress progress) throws InterruptedException, IOException {
+        ScheduledExecutorService heartbeats = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("heartbeat-%d").setDaemon(true).build());
+        try {
+            ShardManifest.Shard claimed;
+            while ((claimed = manifest.claim()) != null) {
+                final ShardManifest.Shard shard = claimed;
+                // Counts of the shard are those of earlier owners plus what this process adds
+                final int removedOffset = shard.getRemovedBefore() - progress.getRemoved();
+                final int skippedOffset = shard.getSkippedBefore() - progress.getSkipped();
+                final AtomicBoolean lost = new AtomicBoolean();
+                ui.info("Removing shard {} of {}", shard.getIndex() + 1, manifest.getShards());
+
+                ScheduledFuture<?> heartbeat = heartbeats.scheduleWithFixedDelay(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            if (!shard.heartbeat(removedOffset + progress.getRemoved(),
+                                    skippedOffset + progress.getSkipped())) {
+                                ui.warn("Shard {} was taken over by another process", shard.getIndex() + 1);
+                                lost.set(true);
+                                removal.stop();
+                            }
+                        } catch (IOException e) {
+                            ui.warn("Unable to update the lock of shard {}: {}", shard.getIndex() + 1, e.toString());
+                        }
+                    }
+                }, ShardManifest.HEARTBEAT_MILLIS, ShardManifest.HEARTBEAT_MILLIS, TimeUnit.MILLISECONDS);
+                StopReason reason;
+                try {
+                    reason = removal.run(snapshot, shard.getRemainingBlocks(), shard);
+                } finally {
+                    heartbeat.cancel(false);
+                }
+
+                int removed = removedOffset + progress.getRemoved();
+                int skipped = skippedOffset + progress.getSkipped();
+                if (reason == StopReason.COMPLETED) {
+                    shard.complete(removed, skipped);
+                } else if (!lost.get()) {
+                    shard.abandon(removed, skipped);
+                    return reason;
+                }
+            }
+            ui.info("No shards left, the others are done or being removed by other processes.");
+            return StopReason.COMPLETED;
+        } finally {
+            heartbeats.shutdownNow();
+        }
+    }
+
+    private StopReason showShardStatus(SnapshotFile snapshot) throws IOException {
+        ShardManifest manifest = ShardManifest.read(options.fromSnapshot.toPath(), snapshot);
+        if (manifest == null) {
+            ui.info("The removal of the snapshot was not split into shards.");
+            return StopReason.STATUS_SHOWN;
+        }
+        int done = 0;
+        int removed = 0;
+        int skipped = 0;
+        for (ShardManifest.Status status : manifest.getStatus()) {
+            ui.shardStatus(status.shard + 1, status.state, status.owner, status.doneBlocks, status.blocks,
+                    status.removed, status.skipped);
+            if (status.doneBlocks == status.blocks) {
+                done++;
+            }
+            removed += status.removed;
+            skipped += status.skipped;
+        }
+        ui.info("{} of {} shards done, {} of {} issues removed, {} skipped", done, manifest.getShards(), removed,
+                snapshot.getCount(), skipped);
+        return StopReason.STATUS_SHOWN;
+    }
+
+    /**
+     * @return false if a filter was not found
+     */
+    private boolean createJobs(JiraClientAdapter client, DeleteStrategy strategy, List<Job> definitions) {
+        FilterCache cache = new FilterCache(options.url, options.user,
+                TimeUnit.MINUTES.toMillis(options.filterCacheTtlMinutes));
+        Iterable<Filter> favorites = null;
+        // An issue matched by several jobs must only be taken by one
+        IssueKeySet claimedKeys = definitions.size() > 1 ? new IssueKeySet() : null;
+        for (Job definition : definitions) {
+            String jql;
+            if (definition.getType() == Job.Type.FILTER) {
+                String name = definition.getValue();
+                jql = findCachedFilter(client, cache, name);
+                if (jql == null) {
+                    if (favorites == null) {
+                        favorites = getFavoriteFilters(client);
+                        if (favorites == null) {
+                            return false;
+                        }
+                    }
+                    Filter filter = findFilter(favorites, name);
+                    if (filter == null) {
+                        return false;
+                    }
+                    cache.put(name, filter.getId(), filter.getJql());
+                    jql = filter.getJql();
+                }
+            } else if (definition.getType() == Job.Type.FILTER_ID) {
+                Filter filter = getFilter(client, Long.parseLong(definition.getValue()));
+                if (filter == null) {
+                    return false;
+                }
+                jql = filter.getJql();
+            } else {
+                jql = definition.getValue();
+            }
+            RemovalProgress progress = new RemovalProgress(claimedKeys);
+            jobs.add(new RemovalJob(definition.getName(), jql, progress, ui, options, client, strategy,
+                    rateController, archive, metrics));
+            String name = definition.getName();
+            sessionProgress.put(sessionProgress.containsKey(name) ? name + " (" + jobs.size() + ")" : name, progress);
+        }
+        return true;
+    }
+
+    /**
+     * Uses bulk deletes if asked to, or if JIRA supports them and not asked otherwise.
+     */
+    private DeleteStrategy createStrategy(JiraClientAdapter client, DeleteEngine workers) {
+        boolean bulk = options.deleteMode == DeleteMode.BULK;
+        if (options.deleteMode == DeleteMode.AUTO) {
+            try {
+                bulk = client.isCloud();
+            } catch (Exception e) {
+                // Already logged, deleting one at a time works everywhere
+            }
+        }
+        if (bulk) {
+            ui.info("Deleting issues with bulk delete tasks of JIRA Cloud, up to {} at a time",
+                    Math.min(options.queryBatchSize, BulkDeleteStrategy.MAX_ISSUES_PER_TASK));
+            return new BulkDeleteStrategy(ui, client, throttle);
+        }
+        return new PerIssueDeleteStrategy(ui, workers, throttle);
+    }
+
+    /**
+     * @return null unless probing JIRA or following a schedule
+     */
+    private ServerLoadMonitor startLoadMonitor(JiraClientAdapter client, DeleteEngine workers) {
+        if (options.pauseLatencyMillis == 0 && schedule == null) {
+            return null;
+        }
+        ServerLoadMonitor monitor = new ServerLoadMonitor(ui, client, throttle, rateLimiter, workers, rateController,
+                schedule, options.maxIssuesPerSecond, options.pauseLatencyMillis);
+        monitor.start();
+        return monitor;
+    }
+
+    /**
+     * Runs each job on its own thread. All of them keep running when one stops on error.
+     */
+    private StopReason runConcurrently(List<RemovalJob> started) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(started.size(),
+                new ThreadFactoryBuilder().setNameFormat("job-%d").setDaemon(true).build());
+        try {
+            List<Future<StopReason>> results = new ArrayList<>();
+            for (final RemovalJob job : started) {
+                results.add(executor.submit(new Callable<StopReason>() {
+                    @Override
+                    public StopReason call() throws Exception {
+                        enterJob(job);
+                        try {
+                            return job.run();
+                        } finally {
+                            leaveJob();
+                        }
+                    }
+                }));
+            }
+
+            StopReason combined = StopReason.COMPLETED;
+            for (Future<StopReason> result : results) {
+                StopReason reason;
+                try {
+                    reason = result.get();
+                } catch (ExecutionException e) {
+                    ui.error("An error has occurred. See log for detail.", e);
+                    reason = StopReason.ERROR;
                 }
-                searchResults = search(client, filter);
-                if (searchResults == null) {
-                    ui.stopped(StopReason.ISSUE_SEARCH_FAILED);
-                    break;
+                if (combined == StopReason.COMPLETED) {
+                    combined = reason;
                 }
             }
+            if (combined == StopReason.COMPLETED) {
+                ui.info("All filters completed");
+            }
+            return combined;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Makes the output tell which job it is about, when there are several.
+     */
+    private void enterJob(RemovalJob job) {
+        if (jobs.size() > 1) {
+            MDC.put("job", job.getName() + ": ");
+        }
+    }
+
+    private void leaveJob() {
+        MDC.remove("job");
+    }
+
+    /**
+     * @return the journal file given, or one next to it for each job when there are several
+     */
+    private Path journalFile(int job) {
+        Path file = options.journal.toPath();
+        if (jobs.size() == 1) {
+            return file;
+        }
+        return file.resolveSibling(file.getFileName() + "." + (job + 1));
+    }
+
+    /**
+     * @return null unless metrics are to be served
+     */
+    private MetricsEndpoint openMetricsEndpoint() throws IOException {
+        if (options.metricsAddress == null) {
+            return null;
+        }
+        try {
+            MetricsEndpoint endpoint = new MetricsEndpoint(MetricsEndpoint.parseAddress(options.metricsAddress),
+                    metrics);
+            ui.info("Serving metrics at http://{}/metrics", options.metricsAddress);
+            return endpoint;
+        } catch (IOException | IllegalArgumentException e) {
+            ui.error("Unable to serve metrics at " + options.metricsAddress, e);
+            throw new IOException(e);
+        }
+    }
+
+    private void writeMetricsSummary() {
+        try (OutputStream out = new FileOutputStream(options.metricsSummary)) {
+            metrics.writeSummary(out);
         } catch (IOException e) {
-            ui.error("An error has occurred. See log for detail.");
-            ui.stopped(StopReason.ERROR);
+            ui.error("Unable to write the metrics summary to " + options.metricsSummary, e);
         }
     }
 
     private boolean verifyConnectivity(JiraClientAdapter client) {
         try {
-            client.getFavoriteFilters();
+            client.verifyConnectivity();
             ui.connectivityVerified();
             return true;
         } catch (Exception e) {
@@ -121,16 +629,50 @@ public class Remover {
         }
     }
 
-    private Filter findFilter(final JiraClientAdapter client, final String filter) {
-        ui.info("Searching favorite filters for \"{}\"", options.filter);
-        Iterable<Filter> filters;
+    /**
+     * Uses the query remembered from a previous run, or looks the filter up by the remembered id if it is too old.
+     *
+     * @return null if the filter is to be searched for among favorites
+     */
+    private String findCachedFilter(JiraClientAdapter client, FilterCache cache, String name) {
+        FilterCache.Entry entry = cache.get(name);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.isFresh()) {
+            ui.info("Using filter \"{}\" (id {}) found earlier", name, entry.getId());
+            return entry.getJql();
+        }
+
+        Filter filter = getFilter(client, entry.getId());
+        if (filter == null || !filter.getName().trim().equalsIgnoreCase(name.trim())) {
+            // Removed or renamed meanwhile
+            return null;
+        }
+        cache.put(name, filter.getId(), filter.getJql());
+        return filter.getJql();
+    }
+
+    private Filter getFilter(JiraClientAdapter client, long id) {
         try {
-            filters = client.getFavoriteFilters();
+            return client.getFilter(id);
         } catch (Exception e) {
             // User already notified by request handler
             return null;
         }
+    }
 
+    private Iterable<Filter> getFavoriteFilters(JiraClientAdapter client) {
+        try {
+            return client.getFavoriteFilters();
+        } catch (Exception e) {
+            // User already notified by request handler
+            return null;
+        }
+    }
+
+    private Filter findFilter(Iterable<Filter> filters, final String filter) {
+        ui.info("Searching favorite filters for \"{}\"", filter);
         List<Filter> matches = Lists.newArrayList(Iterables.filter(filters, new Predicate<Filter>() {
             @Override
             public boolean apply(Filter input) {
@@ -138,65 +680,13 @@ public class Remover {
             }
         }));
         if (matches.size() == 0) {
-            ui.error("Filter not found, make sure it's in favorites. Aborting.");
+            ui.error("Filter \"" + filter + "\" not found, make sure it's in favorites. Aborting.");
             return null;
         }
         if (matches.size() > 1) {
-            ui.error("Found more than one filter with matching name. Aborting.");
+            ui.error("Found more than one filter named \"" + filter + "\". Aborting.");
             return null;
         }
         return matches.get(0);
     }
-
-    private SearchResult search(JiraClientAdapter client, Filter filter) {
-        try {
-            return client.search(filter, options.queryBatchSize, skipped);
-        } catch (Exception e) {
-            // Already logged and retried by the client
-            return null;
-        }
-    }
-
-    private boolean removeBatch(JiraClientAdapter client, SearchResult searchResults) {
-        remaining = searchResults.getTotal() - skipped;
-        logStatus();
-        ui.batchStarting();
-        for (Issue issue : searchResults.getIssues()) {
-            String key = issue.getKey();
-            if (skippedKeys.contains(key)) {
-                continue;
-            }
-
-            rateLimiter.acquire();
-
-            ui.removing(issue);
-            try {
-                client.delete(issue);
-                removed++;
-            } catch (Exception e) {
-                ui.removalFailed();
-                skipped++;
-                skippedKeys.add(key);
-                if (!options.skipErrors) {
-                    ui.info("Stopping on error. Please use the -s (or --skip-errors) option to skip errors.");
-                    return false;
-                }
-            } finally {
-                remaining--;
-            }
-        }
-        ui.batchCompleted();
-        return true;
-    }
-
-    private void logStatus() {
-        if (removed > 0 || skipped > 0) {
-            long batchTime = System.currentTimeMillis() - batchStart;
-            long endTime = System.currentTimeMillis() + remaining * batchTime / options.queryBatchSize;
-            ui.estimateAfterBatchCompletion(batchTime, options.queryBatchSize, new Date(endTime));
-        }
-
-        ui.progress(removed, skipped, remaining);
-        batchStart = System.currentTimeMillis();
-    }
 }
@@ -0,0 +1,26 @@
+package com.expium.massdelete.remover;
+
+/**
+ * Notified about every request attempt made by {@link JiraClientAdapter}, including the ones that are going to
+ * be retried. Called from the thread that made the request.
+ *
+ * Copyright 2015-2016 Expium LLC
+ * http://expium.com/
+ */
+public interface RequestListener {
+    enum Operation {
+        SEARCH,
+        DELETE,
+        BULK_DELETE,
+        BULK_STATUS
+    }
+
+    void succeeded(Operation operation, long latencyNanos);
+
+    void failed(Operation operation, long latencyNanos, Exception e);
+
+    /**
+     * Called after {@link #failed} when the request is going to be attempted again.
+     */
+    void retrying(Operation operation, long delayMillis, Exception e);
+}
@@ -0,0 +1,86 @@
+package com.expium.massdelete.remover;
+
+import com.google.common.base.Predicates;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Iterables;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides which failed requests are retried and how long to wait before that.
+ * <p>
+ * Only failures that may go away on their own are retried: network errors, timeouts and the 429, 502, 503 and 504
+ * statuses. The wait grows exponentially with each attempt and is randomized over the whole range (full jitter),
+ * so that deletions failing together do not retry together. If the server says how long to wait, that is used
+ * instead, up to the same maximum of a minute.
+ * <p>
+ * Retries are also limited to a percentage of successful requests. When the server keeps failing, requests fail
+ * instead of spending the run waiting for retries.
+ *
+ * Copyright 2015-2016 Expium LLC
+ * http://expium.com/
+ */
+class RetryPolicy {
+    private static final long MAX_DELAY_MILLIS = 60_000;
+    // Allows some retries before anything has succeeded
+    private static final double MIN_BUDGET = 10;
+
+    private final int maxRetries;
+    private final long baseDelayMillis;
+    private final double budgetPerSuccess;
+    private final double maxBudget;
+
+    private double budget;
+
+    RetryPolicy(int maxRetries, long baseDelayMillis, int budgetPercent) {
+        this.maxRetries = maxRetries;
+        this.baseDelayMillis = baseDelayMillis;
+        this.budgetPerSuccess = budgetPercent / 100.0;
+        this.maxBudget = Math.max(MIN_BUDGET, budgetPerSuccess * 1_000);
+        this.budget = MIN_BUDGET;
+    }
+
+    int getMaxRetries() {
+        return maxRetries;
+    }
+
+    static boolean isRetryable(Exception e) {
+        int status = JiraErrors.statusCode(e);
+        if (status != -1) {
+            return status == 429 || status == 502 || status == 503 || status == 504;
+        }
+        return JiraErrors.isTimeout(e)
+                || Iterables.any(Throwables.getCausalChain(e), Predicates.instanceOf(IOException.class));
+    }
+
+    synchronized void succeeded() {
+        budget = Math.min(maxBudget, budget + budgetPerSuccess);
+    }
+
+    /**
+     * @return false if too many requests have been retried recently
+     */
+    synchronized boolean tryAcquireRetry() {
+        if (budget < 1) {
+            return false;
+        }
+        budget--;
+        return true;
+    }
+
+    /**
+     * @param retry 1 for the first retry
+     */
+    long delayMillis(int retry, Exception e) {
+        if (e instanceof JiraResponseException) {
+            long retryAfter = ((JiraResponseException) e).getRetryAfterMillis();
+            if (retryAfter >= 0) {
+                // A server asking for hours is not waited for more than any other retry
+                return Math.min(MAX_DELAY_MILLIS, retryAfter);
+            }
+        }
+        long ceiling = Math.min(MAX_DELAY_MILLIS, baseDelayMillis << Math.min(retry - 1, 30));
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+}
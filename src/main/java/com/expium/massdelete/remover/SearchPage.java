@@ -0,0 +1,86 @@
+package com.expium.massdelete.remover;
+
+import com.expium.massdelete.StopReason;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Issues handed over from the search stage to the delete stage. The last page carries no issues, only the
+ * reason why the search stage stopped.
+ *
+ * Copyright 2015-2016 Expium LLC
+ * http://expium.com/
+ */
+class SearchPage {
+    private final List<IssueRef> issues;
+    private final int remainingAtSearch;
+    private final int processedAtSearch;
+    private final long lastId;
+    private final StopReason stopReason;
+
+    // Guarded by Checkpoints
+    private int unprocessed;
+
+    SearchPage(List<IssueRef> issues, int remainingAtSearch, int processedAtSearch, long lastId) {
+        this.issues = issues;
+        this.remainingAtSearch = remainingAtSearch;
+        this.processedAtSearch = processedAtSearch;
+        this.lastId = lastId;
+        this.stopReason = null;
+        this.unprocessed = issues.size();
+    }
+
+    private SearchPage(StopReason stopReason) {
+        this.issues = Collections.emptyList();
+        this.remainingAtSearch = 0;
+        this.processedAtSearch = 0;
+        this.lastId = -1;
+        this.stopReason = stopReason;
+    }
+
+    static SearchPage last(StopReason stopReason) {
+        return new SearchPage(stopReason);
+    }
+
+    boolean isLast() {
+        return stopReason != null;
+    }
+
+    List<IssueRef> getIssues() {
+        return issues;
+    }
+
+    /**
+     * Issues left to process at the time of search, including this page.
+     */
+    int getRemainingAtSearch() {
+        return remainingAtSearch;
+    }
+
+    /**
+     * How many issues had been removed or skipped when the search was issued.
+     */
+    int getProcessedAtSearch() {
+        return processedAtSearch;
+    }
+
+    /**
+     * Id of the last issue in the search results, including issues not handed over, or -1 if there were none.
+     */
+    long getLastId() {
+        return lastId;
+    }
+
+    void processedOne() {
+        unprocessed--;
+    }
+
+    boolean isProcessed() {
+        return unprocessed <= 0;
+    }
+
+    StopReason getStopReason() {
+        return stopReason;
+    }
+}
@@ -0,0 +1,213 @@
+package com.expium.massdelete.remover;
+
+import com.expium.massdelete.PagingMode;
+import com.expium.massdelete.StopReason;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Searches for issues on a background thread and queues them for the delete stage, staying at most
+ * {@code prefetch} pages ahead of it.
+ * <p>
+ * By default, pages are requested by issue id, each one starting after the last id of the previous page, so
+ * the next page can be searched for regardless of what happens to the current one.
+ * <p>
+ * When paging by offset, issues that failed to be removed stay at the beginning of the result set and the ones
+ * still being deleted follow them, so the next page starts after both. Deletes completing while the search is
+ * running may shift the window forward, so any issue seen again is dropped, and the stage only decides that it
+ * is done after a search issued while nothing was pending. Issues that were stepped over are picked up by that
+ * search.
+ *
+ * Copyright 2015-2016 Expium LLC
+ * http://expium.com/
+ */
+class SearchStage implements Runnable {
+    private static final long POLL_MILLIS = 100;
+
+    private final JiraClientAdapter client;
+    private final String jql;
+    private final KeysetJql keysetJql;
+    private final RemovalProgress progress;
+    private final Metrics metrics;
+    private final int batchSize;
+    private final int prefetch;
+    private final BlockingQueue<SearchPage> pages;
+    private final Thread thread;
+
+    private volatile boolean stopped;
+    private long lastId = -1;
+    private int processedAtFirst;
+
+    SearchStage(JiraClientAdapter client, String jql, PagingMode paging, RemovalProgress progress, Metrics metrics,
+            int batchSize, int prefetch) {
+        this.client = client;
+        this.jql = jql;
+        this.keysetJql = paging == PagingMode.OFFSET ? null : new KeysetJql(jql, paging == PagingMode.ID_DESC);
+        this.progress = progress;
+        this.metrics = metrics;
+        this.batchSize = batchSize;
+        this.prefetch = prefetch;
+        this.pages = new ArrayBlockingQueue<>(Math.max(1, prefetch));
+        this.thread = new Thread(this, "search");
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * Continues paging by id after the given one instead of from the beginning.
+     */
+    void resumeAfter(long id) {
+        lastId = id;
+    }
+
+    /**
+     * Searches for the first page of issues. Its total is the number of all issues left to process.
+     */
+    KeySearchResult first() throws Exception {
+        processedAtFirst = progress.getProcessed();
+        KeySearchResult result;
+        if (keysetJql == null) {
+            result = search(jql, progress.getSkipped());
+        } else {
+            result = search(lastId == -1 ? keysetJql.first() : keysetJql.after(lastId), 0);
+        }
+        return result;
+    }
+
+    /**
+     * Queues the issues from the first search and starts searching for more in the background.
+     */
+    void start(KeySearchResult first) throws InterruptedException {
+        int remaining = keysetJql == null ? first.getTotal() - progress.getSkipped() : first.getTotal();
+        put(page(first, remaining, processedAtFirst));
+        thread.start();
+    }
+
+    SearchPage next() throws InterruptedException {
+        return pages.take();
+    }
+
+    void stop() {
+        stopped = true;
+    }
+
+    @Override
+    public void run() {
+        try {
+            if (keysetJql == null) {
+                searchByOffset();
+            } else {
+                searchById();
+            }
+        } catch (InterruptedException e) {
+            // Stopping
+        }
+    }
+
+    private void searchById() throws InterruptedException {
+        while (!stopped) {
+            if (!awaitDeleteStage()) {
+                continue;
+            }
+
+            // Pending issues are behind the last id and not included in the total
+            int pending = progress.getPending();
+            int processed = progress.getProcessed();
+            KeySearchResult result;
+            try {
+                result = search(keysetJql.after(lastId), 0);
+            } catch (Exception e) {
+                // Already logged and retried by the client
+                put(SearchPage.last(StopReason.ISSUE_SEARCH_FAILED));
+                return;
+            }
+
+            if (result.getIssues().isEmpty()) {
+                put(SearchPage.last(StopReason.COMPLETED));
+                return;
+            }
+            put(page(result, result.getTotal() + pending, processed));
+        }
+    }
+
+    private void searchByOffset() throws InterruptedException {
+        while (!stopped) {
+            if (!awaitDeleteStage()) {
+                continue;
+            }
+
+            boolean quiescent = progress.getPending() == 0;
+            if (quiescent && progress.getRemaining() == 0) {
+                put(SearchPage.last(StopReason.COMPLETED));
+                return;
+            }
+
+            int skipped = progress.getSkipped();
+            int processed = progress.getProcessed();
+            KeySearchResult result;
+            try {
+                result = search(jql, skipped + progress.getPending());
+            } catch (Exception e) {
+                // Already logged and retried by the client
+                put(SearchPage.last(StopReason.ISSUE_SEARCH_FAILED));
+                return;
+            }
+
+            SearchPage page = page(result, result.getTotal() - skipped, processed);
+            if (!page.getIssues().isEmpty()) {
+                put(page);
+            } else if (quiescent) {
+                put(SearchPage.last(result.getTotal() <= skipped ?
+                        StopReason.COMPLETED :
+                        StopReason.NOTHING_REMOVED_IN_BATCH));
+                return;
+            } else {
+                // Everything found is still being deleted, search again once some of it is done
+                progress.awaitRelease(POLL_MILLIS);
+            }
+        }
+    }
+
+    /**
+     * Without prefetch, waits for the delete stage to finish before searching again.
+     *
+     * @return false if still waiting
+     */
+    private boolean awaitDeleteStage() throws InterruptedException {
+        return progress.awaitPendingAtMost(prefetch * batchSize, POLL_MILLIS);
+    }
+
+    private KeySearchResult search(String jql, int offset) throws Exception {
+        long start = System.nanoTime();
+        KeySearchResult result = client.search(jql, batchSize, offset);
+        metrics.searchPageCompleted(System.nanoTime() - start);
+        return result;
+    }
+
+    private SearchPage page(KeySearchResult result, int remainingAtSearch, int processedAtSearch) {
+        List<IssueRef> issues = new ArrayList<>();
+        for (IssueRef issue : result.getIssues()) {
+            String key = issue.getKey();
+            if (!progress.isSkipped(key) && progress.markPending(key)) {
+                issues.add(issue);
+            }
+        }
+        List<IssueRef> found = result.getIssues();
+        long pageLastId = found.isEmpty() ? -1 : found.get(found.size() - 1).getId();
+        if (pageLastId != -1) {
+            lastId = pageLastId;
+        }
+        return new SearchPage(issues, remainingAtSearch, processedAtSearch, pageLastId);
+    }
+
+    private void put(SearchPage page) throws InterruptedException {
+        while (!stopped) {
+            if (pages.offer(page, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.expium.massdelete.remover;
+
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.io.Closeable;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Slows deleting down while JIRA is busy with other work, and follows a schedule of the rates allowed at times of
+ * the day.
+ * <p>
+ * Every few seconds, JIRA is sent a request that is cheap for it, whose latency tells how loaded it is. Up to half
+ * of the pause latency, deleting goes at the full rate and parallelism. Above that, both are scaled down linearly,
+ * to a tenth just below the pause latency, and deleting pauses altogether above it. A failed probe counts as above
+ * it. The median of the last few probes is used, so that a single slow one does not pause deleting.
+ * <p>
+ * The result is the ceiling of the rate and parallelism. Without adapting the rate, they are set to it; when
+ * adapting, the controller keeps below it.
+ *
+ * Copyright 2015-2016 Expium LLC
+ * http://expium.com/
+ */
+class ServerLoadMonitor implements Closeable {
+    private static final long INTERVAL_MILLIS = 5_000;
+    private static final int PROBES = 3;
+    // Share of the pause latency up to which the server does not count as loaded
+    private static final double UNLOADED = 0.5;
+    // Share of the rate and parallelism left just below the pause latency
+    private static final double MIN_FACTOR = 0.1;
+    // Change of the rate worth reporting
+    private static final double REPORTED_CHANGE = 0.1;
+
+    private final RemovalListener ui;
+    private final JiraClientAdapter client;
+    private final Throttle throttle;
+    private final RateLimiter rateLimiter;
+    private final DeleteEngine workers;
+    private final AdaptiveRateController rateController;
+    private final RateSchedule schedule;
+    private final double maxRate;
+    private final long pauseLatencyNanos;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("load-monitor").setDaemon(true).build());
+    // Latest probe latencies, Long.MAX_VALUE for failed ones
+    private final long[] probes = new long[PROBES];
+    private int probed;
+
+    // As last applied, only accessed by the scheduler thread once started
+    private RateSchedule.Period period;
+    private String pause;
+    private double reportedRate = -1;
+    private int reportedLimit = -1;
+
+    /**
+     * @param rateController null unless adapting the rate
+     * @param schedule null if there is none
+     * @param pauseLatencyMillis 0 to not probe JIRA
+     */
+    ServerLoadMonitor(RemovalListener ui, JiraClientAdapter client, Throttle throttle, RateLimiter rateLimiter,
+            DeleteEngine workers, AdaptiveRateController rateController, RateSchedule schedule, double maxRate,
+            long pauseLatencyMillis) {
+        this.ui = ui;
+        this.client = client;
+        this.throttle = throttle;
+        this.rateLimiter = rateLimiter;
+        this.workers = workers;
+        this.rateController = rateController;
+        this.schedule = schedule;
+        this.maxRate = maxRate;
+        this.pauseLatencyNanos = TimeUnit.MILLISECONDS.toNanos(pauseLatencyMillis);
+    }
+
+    /**
+     * Checks right away, so that a pause applies before the first deletion, and then every few seconds.
+     */
+    void start() {
+        check();
+        scheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                check();
+            }
+        }, INTERVAL_MILLIS, INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops checking and lets deletions go on if paused.
+     */
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        throttle.setPaused(false);
+    }
+
+    private void check() {
+        double rate = maxRate;
+        int limit = workers.getParallelism();
+        String reason = null;
+
+        long latency = -1;
+        if (pauseLatencyNanos > 0) {
+            latency = probe();
+            if (latency < 0) {
+                // Interrupted, closing
+                return;
+            }
+            if (latency > pauseLatencyNanos) {
+                reason = latency == Long.MAX_VALUE ? "JIRA is failing to respond"
+                        : "JIRA takes " + TimeUnit.NANOSECONDS.toMillis(latency) + " ms to respond, more than "
+                                + TimeUnit.NANOSECONDS.toMillis(pauseLatencyNanos) + " ms";
+            } else {
+                double factor = factor(latency);
+                rate *= factor;
+                limit = (int) Math.max(1, limit * factor);
+            }
+        }
+
+        if (schedule != null) {
+            RateSchedule.Period current = schedule.get(Calendar.getInstance());
+            if (current != period && current != null) {
+                ui.info("Following the schedule for {}", current);
+            } else if (current != period) {
+                ui.info("Outside of the scheduled periods, following the options");
+            }
+            period = current;
+            if (current != null && current.getRate() == 0) {
+                reason = "paused by the schedule for " + current;
+            } else if (current != null) {
+                rate = Math.min(rate, current.getRate());
+                if (current.getParallelism() > 0) {
+                    limit = Math.min(limit, current.getParallelism());
+                }
+            }
+        }
+
+        if (reason != null) {
+            if (pause == null) {
+                ui.warn("Pausing, {}", reason);
+            }
+            pause = reason;
+            throttle.setPaused(true);
+            return;
+        }
+        if (pause != null) {
+            ui.info("Resuming");
+            pause = null;
+        }
+        apply(rate, limit, latency);
+        throttle.setPaused(false);
+    }
+
+    private void apply(double rate, int limit, long latency) {
+        if (rateController != null) {
+            rateController.setCeiling(rate, limit);
+        } else {
+            if (rate != rateLimiter.getRate()) {
+                rateLimiter.setRate(rate);
+            }
+            workers.setLimit(limit);
+        }
+        if (limit != reportedLimit || Math.abs(rate - reportedRate) > reportedRate * REPORTED_CHANGE) {
+            ui.loadAdjusted(rate, limit, latency < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(latency));
+            reportedRate = rate;
+            reportedLimit = limit;
+        }
+    }
+
+    /**
+     * @return 1 while JIRA is not loaded, down to {@link #MIN_FACTOR} near the pause latency
+     */
+    private double factor(long latency) {
+        double unloaded = pauseLatencyNanos * UNLOADED;
+        if (latency <= unloaded) {
+            return 1;
+        }
+        double load = (latency - unloaded) / (pauseLatencyNanos - unloaded);
+        return 1 - load * (1 - MIN_FACTOR);
+    }
+
+    /**
+     * @return median latency of the latest probes including a new one, or -1 if interrupted
+     */
+    private long probe() {
+        long start = System.nanoTime();
+        long latency;
+        try {
+            client.probe();
+            latency = System.nanoTime() - start;
+        } catch (InterruptedException e) {
+            return -1;
+        } catch (Exception e) {
+            latency = Long.MAX_VALUE;
+        }
+        probes[probed % PROBES] = latency;
+        probed++;
+
+        long[] latest = Arrays.copyOf(probes, Math.min(probed, PROBES));
+        Arrays.sort(latest);
+        return latest[latest.length / 2];
+    }
+}
@@ -0,0 +1,107 @@
+package com.expium.massdelete.remover;
+
+import com.atlassian.httpclient.api.Request;
+import com.atlassian.jira.rest.client.api.AuthenticationHandler;
+import com.expium.massdelete.Options;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+
+/**
+ * Authenticates requests with a session cookie once logged in, so that JIRA does not check the password on
+ * every request. Sends the password with each request until then, or if logging in is not possible.
+ *
+ * Copyright 2015-2016 Expium LLC
+ * http://expium.com/
+ */
+class SessionAuthenticationHandler implements AuthenticationHandler {
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private final Options options;
+    private final PasswordAuthenticationHandler basic;
+
+    private volatile String cookie;
+
+    SessionAuthenticationHandler(Options options) {
+        this.options = options;
+        this.basic = new PasswordAuthenticationHandler(options);
+    }
+
+    @Override
+    public void configure(Request request) {
+        String cookie = this.cookie;
+        if (cookie == null) {
+            basic.configure(request);
+        } else {
+            request.setHeader("Cookie", cookie);
+        }
+    }
+
+    /**
+     * @return body of the request to {@code /rest/auth/1/session} that logs in
+     */
+    String loginRequest() throws IOException {
+        StringWriter body = new StringWriter();
+        try (JsonGenerator json = JSON.createGenerator(body)) {
+            json.writeStartObject();
+            json.writeStringField("username", options.user);
+            json.writeStringField("password", options.password);
+            json.writeEndObject();
+        }
+        return body.toString();
+    }
+
+    /**
+     * Reads the session cookie from a successful login response, {@code {"session":{"name":..,"value":..}}}.
+     *
+     * @return false if the response has no session
+     */
+    boolean loggedIn(InputStream response) throws IOException {
+        String name = null;
+        String value = null;
+        try (JsonParser parser = JSON.createParser(response)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return false;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                if (parser.nextToken() == JsonToken.START_OBJECT && field.equals("session")) {
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        String sessionField = parser.getCurrentName();
+                        parser.nextToken();
+                        if (sessionField.equals("name")) {
+                            name = parser.getValueAsString();
+                        } else if (sessionField.equals("value")) {
+                            value = parser.getValueAsString();
+                        } else {
+                            parser.skipChildren();
+                        }
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        if (name == null || value == null) {
+            return false;
+        }
+        cookie = name + "=" + value;
+        return true;
+    }
+
+    /**
+     * Goes back to sending the password, until logged in again.
+     */
+    void loggedOut() {
+        cookie = null;
+    }
+
+    boolean isLoggedIn() {
+        return cookie != null;
+    }
+}
@@ -0,0 +1,365 @@
+package com.expium.massdelete.remover;
+
+import com.google.common.base.Charsets;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Splits the removal of a snapshot into shards, contiguous ranges of its blocks and so of issue ids, that several
+ * processes on several machines take one at a time. They coordinate through files in a directory next to the
+ * snapshot, which needs to be on a disk they all share.
+ * <p>
+ * A process claims a shard by creating its lock file, and rewrites it regularly with the time and the blocks done
+ * so far. A shard whose lock is not rewritten for a while is taken over by the next process looking for work,
+ * skipping the blocks done. When two take over the same shard at once, the one that no longer finds itself in
+ * the lock stops at its next heartbeat; issues removed twice are not found the second time, which is harmless.
+ *
+ * Copyright 2015-2016 Expium LLC
+ * http://expium.com/
+ */
+class ShardManifest {
+    static final long HEARTBEAT_MILLIS = 10_000;
+    // Generous, as the clocks of the machines may differ
+    private static final long STALE_MILLIS = 120_000;
+
+    private final Path directory;
+    private final SnapshotFile snapshot;
+    private final int shards;
+    private final String owner = ManagementFactory.getRuntimeMXBean().getName();
+
+    private ShardManifest(Path directory, SnapshotFile snapshot, int shards) {
+        this.directory = directory;
+        this.snapshot = snapshot;
+        this.shards = shards;
+    }
+
+    /**
+     * Splits the snapshot, or joins the processes that already did.
+     */
+    static ShardManifest open(Path snapshotFile, SnapshotFile snapshot, int shards) throws IOException {
+        Path directory = directory(snapshotFile);
+        Files.createDirectories(directory);
+        Path file = directory.resolve("manifest.properties");
+        if (!Files.exists(file)) {
+            Properties manifest = new Properties();
+            manifest.setProperty("taken", String.valueOf(snapshot.getTaken()));
+            manifest.setProperty("issues", String.valueOf(snapshot.getCount()));
+            manifest.setProperty("shards", String.valueOf(shards));
+            Path temp = write(file, manifest, ManagementFactory.getRuntimeMXBean().getName());
+            try {
+                Files.move(temp, file);
+            } catch (FileAlreadyExistsException e) {
+                // Another process was first
+                Files.delete(temp);
+            }
+        }
+        ShardManifest manifest = read(snapshotFile, snapshot);
+        if (manifest.shards != shards) {
+            throw new IOException("The snapshot is already split into " + manifest.shards + " shards");
+        }
+        return manifest;
+    }
+
+    /**
+     * @return null if the snapshot was never split
+     */
+    static ShardManifest read(Path snapshotFile, SnapshotFile snapshot) throws IOException {
+        Path directory = directory(snapshotFile);
+        Path file = directory.resolve("manifest.properties");
+        if (!Files.exists(file)) {
+            return null;
+        }
+        Properties manifest = load(file);
+        if (!String.valueOf(snapshot.getTaken()).equals(manifest.getProperty("taken"))
+                || !String.valueOf(snapshot.getCount()).equals(manifest.getProperty("issues"))) {
+            throw new IOException("The shards in " + directory + " belong to another snapshot, remove them first");
+        }
+        try {
+            return new ShardManifest(directory, snapshot, Integer.parseInt(manifest.getProperty("shards")));
+        } catch (NumberFormatException e) {
+            throw new IOException("The shard manifest is damaged");
+        }
+    }
+
+    int getShards() {
+        return shards;
+    }
+
+    /**
+     * Takes the first shard that is neither done nor being removed by a live process.
+     *
+     * @return null if there is none
+     */
+    Shard claim() throws IOException {
+        for (int i = 0; i < shards; i++) {
+            if (Files.exists(doneFile(i))) {
+                continue;
+            }
+            Path lock = lockFile(i);
+            try {
+                Files.createFile(lock);
+                Shard shard = new Shard(i, new Properties());
+                shard.write(0, 0, System.currentTimeMillis());
+                return shard;
+            } catch (FileAlreadyExistsException e) {
+                Properties state = loadQuietly(lock);
+                if (state != null && heartbeatAge(state, lock) > STALE_MILLIS) {
+                    Shard shard = new Shard(i, state);
+                    shard.write(shard.getRemovedBefore(), shard.getSkippedBefore(), System.currentTimeMillis());
+                    return shard;
+                }
+            }
+        }
+        return null;
+    }
+
+    List<Status> getStatus() throws IOException {
+        List<Status> status = new ArrayList<>();
+        for (int i = 0; i < shards; i++) {
+            Shard shard = new Shard(i, new Properties());
+            Properties state = loadQuietly(doneFile(i));
+            String description = "done";
+            if (state == null) {
+                state = loadQuietly(lockFile(i));
+                if (state == null) {
+                    state = new Properties();
+                    description = "not started";
+                } else {
+                    description = heartbeatAge(state, lockFile(i)) > STALE_MILLIS ? "stalled" : "running";
+                }
+            }
+            int blocks = shard.to - shard.from;
+            int done = description.equals("done") ? blocks : decodeBlocks(state.getProperty("done", "")).cardinality();
+            status.add(new Status(i, description, state.getProperty("owner"), done, blocks,
+                    parseInt(state.getProperty("removed")), parseInt(state.getProperty("skipped"))));
+        }
+        return status;
+    }
+
+    static class Status {
+        final int shard;
+        final String state;
+        final String owner;
+        final int doneBlocks;
+        final int blocks;
+        final int removed;
+        final int skipped;
+
+        Status(int shard, String state, String owner, int doneBlocks, int blocks, int removed, int skipped) {
+            this.shard = shard;
+            this.state = state;
+            this.owner = owner;
+            this.doneBlocks = doneBlocks;
+            this.blocks = blocks;
+            this.removed = removed;
+            this.skipped = skipped;
+        }
+    }
+
+    class Shard implements SnapshotRemoval.Listener {
+        private final int index;
+        private final int from;
+        private final int to;
+        // Relative to from
+        private final BitSet done;
+        private final int removedBefore;
+        private final int skippedBefore;
+
+        private Shard(int index, Properties state) {
+            this.index = index;
+            this.from = (int) ((long) snapshot.getBlockCount() * index / shards);
+            this.to = (int) ((long) snapshot.getBlockCount() * (index + 1) / shards);
+            this.done = decodeBlocks(state.getProperty("done", ""));
+            this.removedBefore = parseInt(state.getProperty("removed"));
+            this.skippedBefore = parseInt(state.getProperty("skipped"));
+        }
+
+        int getIndex() {
+            return index;
+        }
+
+        /**
+         * @return counts recorded by processes that held the shard before
+         */
+        int getRemovedBefore() {
+            return removedBefore;
+        }
+
+        int getSkippedBefore() {
+            return skippedBefore;
+        }
+
+        synchronized int[] getRemainingBlocks() {
+            int[] blocks = new int[to - from - done.cardinality()];
+            int i = 0;
+            for (int block = from; block < to; block++) {
+                if (!done.get(block - from)) {
+                    blocks[i++] = block;
+                }
+            }
+            return blocks;
+        }
+
+        @Override
+        public synchronized void blockRemoved(int block) {
+            done.set(block - from);
+        }
+
+        /**
+         * @param removed including those removed before
+         * @return false if another process took the shard over
+         */
+        boolean heartbeat(int removed, int skipped) throws IOException {
+            Properties state = loadQuietly(lockFile(index));
+            if (state == null || !owner.equals(state.getProperty("owner"))) {
+                return false;
+            }
+            write(removed, skipped, System.currentTimeMillis());
+            return true;
+        }
+
+        /**
+         * Lets the next process looking for work take the shard over right away, continuing where this one
+         * stopped.
+         */
+        void abandon(int removed, int skipped) throws IOException {
+            write(removed, skipped, 0);
+        }
+
+        void complete(int removed, int skipped) throws IOException {
+            Files.move(ShardManifest.write(doneFile(index), state(removed, skipped, System.currentTimeMillis()),
+                    owner), doneFile(index), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Files.deleteIfExists(lockFile(index));
+        }
+
+        private void write(int removed, int skipped, long heartbeat) throws IOException {
+            Files.move(ShardManifest.write(lockFile(index), state(removed, skipped, heartbeat), owner),
+                    lockFile(index), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        private synchronized Properties state(int removed, int skipped, long heartbeat) {
+            Properties state = new Properties();
+            state.setProperty("owner", owner);
+            state.setProperty("heartbeat", String.valueOf(heartbeat));
+            state.setProperty("removed", String.valueOf(removed));
+            state.setProperty("skipped", String.valueOf(skipped));
+            state.setProperty("done", encodeBlocks(done));
+            return state;
+        }
+    }
+
+    private Path lockFile(int shard) {
+        return directory.resolve("shard-" + (shard + 1) + ".lock");
+    }
+
+    private Path doneFile(int shard) {
+        return directory.resolve("shard-" + (shard + 1) + ".done");
+    }
+
+    private static Path directory(Path snapshotFile) {
+        return snapshotFile.resolveSibling(snapshotFile.getFileName() + ".shards");
+    }
+
+    /**
+     * A lock just created may not have its content yet, its age is then that of the file.
+     */
+    private static long heartbeatAge(Properties state, Path lock) throws IOException {
+        String heartbeat = state.getProperty("heartbeat");
+        try {
+            long time = heartbeat != null ? Long.parseLong(heartbeat)
+                    : Files.getLastModifiedTime(lock).toMillis();
+            return System.currentTimeMillis() - time;
+        } catch (NumberFormatException | NoSuchFileException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * @return the name of a temporary file next to the given one with the properties, unique to the writer
+     */
+    private static Path write(Path file, Properties properties, String writer) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + "." + writer.replaceAll("[^A-Za-z0-9.-]", "_")
+                + ".tmp");
+        try (Writer out = Files.newBufferedWriter(temp, Charsets.UTF_8)) {
+            properties.store(out, "Expium Mass Delete for JIRA shard");
+        }
+        return temp;
+    }
+
+    private static Properties load(Path file) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, Charsets.UTF_8)) {
+            properties.load(reader);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Unable to read " + file, e);
+        }
+        return properties;
+    }
+
+    /**
+     * @return null if the file does not exist (any more)
+     */
+    private static Properties loadQuietly(Path file) throws IOException {
+        try {
+            return load(file);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    private static int parseInt(String value) {
+        try {
+            return value == null ? 0 : Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * "0-12,15,17-20"
+     */
+    private static String encodeBlocks(BitSet blocks) {
+        StringBuilder encoded = new StringBuilder();
+        for (int start = blocks.nextSetBit(0); start >= 0; start = blocks.nextSetBit(start)) {
+            int end = blocks.nextClearBit(start) - 1;
+            if (encoded.length() > 0) {
+                encoded.append(',');
+            }
+            encoded.append(start);
+            if (end > start) {
+                encoded.append('-').append(end);
+            }
+            start = end + 1;
+        }
+        return encoded.toString();
+    }
+
+    private static BitSet decodeBlocks(String encoded) {
+        BitSet blocks = new BitSet();
+        for (String range : encoded.split(",")) {
+            if (range.isEmpty()) {
+                continue;
+            }
+            String[] bounds = range.split("-", 2);
+            try {
+                int start = Integer.parseInt(bounds[0]);
+                blocks.set(start, (bounds.length > 1 ? Integer.parseInt(bounds[1]) : start) + 1);
+            } catch (NumberFormatException e) {
+                // Done again
+            }
+        }
+        return blocks;
+    }
+}
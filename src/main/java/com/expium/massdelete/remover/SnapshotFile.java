@@ -0,0 +1,168 @@
+package com.expium.massdelete.remover;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Ids of the issues to remove, written by one run and removed from by another, possibly on another machine.
+ * <p>
+ * The ids are sorted and stored as differences from the previous one, in a variable number of bytes (usually one
+ * or two). They are split into blocks that decode independently, so that workers can each take a range of them.
+ * The file starts with a header (magic, version, time taken, number of ids, ids per block, number of blocks)
+ * followed by the first id and offset of each block, then the blocks. It is memory mapped when read, so at most
+ * 2 GB, some hundreds of millions of issues.
+ *
+ * Copyright 2015-2016 Expium LLC
+ * http://expium.com/
+ */
+class SnapshotFile {
+    private static final int MAGIC = 0x4d44534e; // "MDSN"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 32;
+    private static final int INDEX_ENTRY_BYTES = 16;
+    private static final int BLOCK_SIZE = 1024;
+
+    private final ByteBuffer buffer;
+    private final long taken;
+    private final long count;
+    private final int blockSize;
+    private final int blockCount;
+
+    private SnapshotFile(ByteBuffer buffer, long taken, long count, int blockSize, int blockCount) {
+        this.buffer = buffer;
+        this.taken = taken;
+        this.count = count;
+        this.blockSize = blockSize;
+        this.blockCount = blockCount;
+    }
+
+    /**
+     * Replaces the file at once, so that a snapshot interrupted while writing leaves any previous one intact.
+     *
+     * @param ids sorted ascending, without duplicates
+     */
+    static void write(Path file, long[] ids) throws IOException {
+        int blockCount = (ids.length + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(System.currentTimeMillis());
+            out.writeLong(ids.length);
+            out.writeInt(BLOCK_SIZE);
+            out.writeInt(blockCount);
+
+            long offset = HEADER_BYTES + (long) blockCount * INDEX_ENTRY_BYTES;
+            for (int block = 0; block < blockCount; block++) {
+                int from = block * BLOCK_SIZE;
+                out.writeLong(ids[from]);
+                out.writeLong(offset);
+                for (int i = from + 1; i < Math.min(ids.length, from + BLOCK_SIZE); i++) {
+                    offset += varLongSize(ids[i] - ids[i - 1]);
+                }
+            }
+            for (int i = 0; i < ids.length; i++) {
+                if (i % BLOCK_SIZE != 0) {
+                    writeVarLong(out, ids[i] - ids[i - 1]);
+                }
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    static SnapshotFile open(Path file) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("The snapshot is too large");
+            }
+            // The mapping stays valid after the channel is closed
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.limit() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a snapshot file");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported snapshot version " + buffer.getInt(4));
+        }
+        long taken = buffer.getLong(8);
+        long count = buffer.getLong(16);
+        int blockSize = buffer.getInt(24);
+        int blockCount = buffer.getInt(28);
+        if (blockSize < 1 || (count + blockSize - 1) / blockSize != blockCount
+                || buffer.limit() < HEADER_BYTES + (long) blockCount * INDEX_ENTRY_BYTES) {
+            throw new IOException("The snapshot is damaged");
+        }
+        return new SnapshotFile(buffer, taken, count, blockSize, blockCount);
+    }
+
+    /**
+     * @return when the snapshot was taken, in milliseconds since the epoch
+     */
+    long getTaken() {
+        return taken;
+    }
+
+    long getCount() {
+        return count;
+    }
+
+    int getBlockCount() {
+        return blockCount;
+    }
+
+    int getBlockLength(int block) {
+        return (int) Math.min(blockSize, count - (long) block * blockSize);
+    }
+
+    /**
+     * Safe to call from several threads at once.
+     *
+     * @return the ids in the block, ascending
+     */
+    long[] readBlock(int block) {
+        int index = HEADER_BYTES + block * INDEX_ENTRY_BYTES;
+        long[] ids = new long[getBlockLength(block)];
+        long id = buffer.getLong(index);
+        // Absolute reads do not touch the position shared with other threads
+        int position = (int) buffer.getLong(index + 8);
+        ids[0] = id;
+        for (int i = 1; i < ids.length; i++) {
+            long delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buffer.get(position++);
+                delta |= (long) (b & 0x7f) << shift;
+                shift += 7;
+            } while (b < 0);
+            id += delta;
+            ids[i] = id;
+        }
+        return ids;
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7fL) != 0) {
+            out.writeByte((int) (value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static int varLongSize(long value) {
+        int size = 1;
+        while ((value & ~0x7fL) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+}
@@ -0,0 +1,212 @@
+package com.expium.massdelete.remover;
+
+import com.expium.massdelete.Options;
+import com.expium.massdelete.StopReason;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Removes the issues listed in a snapshot file, without searching. Each worker takes its own range of the blocks
+ * given and hands their issues to the delete engine, so workers share nothing but the engine and the rate limit.
+ * An issue that is not found counts as removed, which makes running it again after it stopped, or on another
+ * machine, safe.
+ *
+ * Copyright 2015-2016 Expium LLC
+ * http://expium.com/
+ */
+class SnapshotRemoval {
+    interface Listener {
+        /**
+         * Called when all issues of the block are removed or skipped.
+         */
+        void blockRemoved(int block);
+    }
+
+    private static final long STATUS_INTERVAL_MILLIS = 10_000;
+
+    private final RemovalListener ui;
+    private final Options options;
+    private final JiraClientAdapter client;
+    private final DeleteEngine engine;
+    private final Throttle throttle;
+    private final AdaptiveRateController rateController;
+    private final RemovalProgress progress;
+    private final ThroughputEstimator estimator = new ThroughputEstimator();
+    private final AtomicInteger notFound = new AtomicInteger();
+
+    private volatile boolean failed;
+    private volatile boolean stopping;
+
+    /**
+     * @param rateController null unless adapting the rate
+     */
+    SnapshotRemoval(RemovalProgress progress, RemovalListener ui, Options options, JiraClientAdapter client,
+            DeleteEngine engine, Throttle throttle, AdaptiveRateController rateController, Metrics metrics) {
+        this.progress = progress;
+        this.ui = ui;
+        this.options = options;
+        this.client = client;
+        this.engine = engine;
+        this.throttle = throttle;
+        this.rateController = rateController;
+        metrics.add(progress);
+    }
+
+    StopReason run(SnapshotFile snapshot) throws InterruptedException {
+        int[] blocks = new int[snapshot.getBlockCount()];
+        for (int i = 0; i < blocks.length; i++) {
+            blocks[i] = i;
+        }
+        return run(snapshot, blocks, null);
+    }
+
+    /**
+     * May be called several times, counting on from the previous ones.
+     *
+     * @param listener null if not needed
+     */
+    StopReason run(final SnapshotFile snapshot, final int[] blocks, final Listener listener)
+            throws InterruptedException {
+        int issues = 0;
+        for (int block : blocks) {
+            issues += snapshot.getBlockLength(block);
+        }
+        progress.setRemaining(issues);
+        estimator.start(progress.getProcessed());
+        notFound.set(0);
+        stopping = false;
+
+        ThreadFactory threads = new ThreadFactoryBuilder().setNameFormat("snapshot-%d").setDaemon(true).build();
+        int workers = Math.max(1, Math.min(options.parallelism, blocks.length));
+        List<Thread> started = new ArrayList<>();
+        for (int i = 0; i < workers; i++) {
+            final int from = (int) ((long) blocks.length * i / workers);
+            final int to = (int) ((long) blocks.length * (i + 1) / workers);
+            Thread thread = threads.newThread(new Runnable() {
+                @Override
+                public void run() {
+                    removeBlocks(snapshot, blocks, from, to, listener);
+                }
+            });
+            thread.start();
+            started.add(thread);
+        }
+
+        try {
+            long nextStatus = System.currentTimeMillis() + STATUS_INTERVAL_MILLIS;
+            for (Thread thread : started) {
+                while (thread.isAlive()) {
+                    thread.join(Math.max(1, nextStatus - System.currentTimeMillis()));
+                    if (System.currentTimeMillis() >= nextStatus) {
+                        logStatus();
+                        nextStatus += STATUS_INTERVAL_MILLIS;
+                    }
+                }
+            }
+            engine.awaitIdle();
+        } finally {
+            for (Thread thread : started) {
+                thread.interrupt();
+            }
+        }
+
+        if (notFound.get() > 0) {
+            ui.info("{} of the issues were removed already.", notFound.get());
+        }
+        if (failed && !options.skipErrors) {
+            ui.info("Stopping on error. Please use the -s (or --skip-errors) option to skip errors.");
+            return StopReason.ERROR;
+        }
+        if (stopping) {
+            return StopReason.ERROR;
+        }
+        ui.info("Completed");
+        return StopReason.COMPLETED;
+    }
+
+    /**
+     * Makes the workers stop after the deletions in flight, from another thread.
+     */
+    void stop() {
+        stopping = true;
+    }
+
+    private void removeBlocks(SnapshotFile snapshot, int[] blocks, int from, int to, Listener listener) {
+        for (int i = from; i < to; i++) {
+            BlockDeletions block = new BlockDeletions(blocks[i], listener);
+            for (long id : snapshot.readBlock(blocks[i])) {
+                if ((failed && !options.skipErrors) || stopping || Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+                try {
+                    throttle.acquire(1);
+                    block.submitting();
+                    engine.submit(new IssueRef(id, String.valueOf(id), null), block);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+            block.allSubmitted();
+        }
+    }
+
+    private void logStatus() {
+        RemovalJob.logStatus(ui, progress, estimator, client, rateController);
+    }
+
+    /**
+     * Counts the deletions of one block, to tell the listener once all of them have completed.
+     */
+    private class BlockDeletions implements DeleteEngine.IfExistsListener {
+        private final int block;
+        private final Listener listener;
+        // Deletions not completed yet, plus one until all of the block are submitted
+        private final AtomicInteger pending = new AtomicInteger(1);
+
+        private volatile boolean blockFailed;
+
+        BlockDeletions(int block, Listener listener) {
+            this.block = block;
+            this.listener = listener;
+        }
+
+        void submitting() {
+            pending.incrementAndGet();
+        }
+
+        void allSubmitted() {
+            release();
+        }
+
+        @Override
+        public void removed(IssueRef issue) {
+            progress.removed(issue.getKey());
+            release();
+        }
+
+        @Override
+        public void notFound(IssueRef issue) {
+            notFound.incrementAndGet();
+            removed(issue);
+        }
+
+        @Override
+        public void failed(IssueRef issue, Exception e) {
+            progress.skipped(issue.getKey());
+            blockFailed = true;
+            failed = true;
+            release();
+        }
+
+        private void release() {
+            // A block with a failure is taken up again by the next run, unless skipping errors
+            if (pending.decrementAndGet() == 0 && listener != null && (!blockFailed || options.skipErrors)) {
+                listener.blockRemoved(block);
+            }
+        }
+    }
+}
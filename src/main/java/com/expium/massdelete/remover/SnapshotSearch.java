@@ -0,0 +1,97 @@
+package com.expium.massdelete.remover;
+
+import com.expium.massdelete.Options;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Pages through all issues the jobs would remove, without removing any, and writes their ids to a snapshot file
+ * for {@link SnapshotRemoval} to remove later.
+ *
+ * Copyright 2015-2016 Expium LLC
+ * http://expium.com/
+ */
+class SnapshotSearch {
+    private final RemovalListener ui;
+    private final Options options;
+    private final IssueSearcher client;
+
+    SnapshotSearch(RemovalListener ui, Options options, IssueSearcher client) {
+        this.ui = ui;
+        this.options = options;
+        this.client = client;
+    }
+
+    /**
+     * @param jqls queries of the jobs
+     * @return false if a search failed
+     */
+    boolean run(List<String> jqls) throws IOException {
+        IssueScan scan = new IssueScan(client, options);
+        // Also drops issues matched by several jobs
+        final LongHashSet ids = new LongHashSet();
+        // Subtask ids, each followed by that of its parent
+        final LongList subtasks = new LongList();
+        IssueScan.Listener listener = new IssueScan.Listener() {
+            @Override
+            public void found(IssueRef issue) {
+                if (issue.isSubtask()) {
+                    subtasks.add(issue.getId());
+                    subtasks.add(issue.getParentId());
+                } else {
+                    ids.add(issue.getId());
+                }
+            }
+        };
+        for (String jql : jqls) {
+            if (!scan.run(jql, listener)) {
+                return false;
+            }
+        }
+
+        // Subtasks of issues in the snapshot are deleted along with them
+        int withParent = 0;
+        for (int i = 0; i < subtasks.size(); i += 2) {
+            if (ids.contains(subtasks.get(i + 1))) {
+                withParent++;
+            } else {
+                ids.add(subtasks.get(i));
+            }
+        }
+        if (withParent > 0) {
+            ui.info("Left out {} subtasks, they are removed along with their parents.", withParent);
+        }
+
+        long[] sorted = ids.toArray();
+        Arrays.sort(sorted);
+        SnapshotFile.write(options.snapshot.toPath(), sorted);
+        ui.info("Found {} issues in {} s, their ids are in {}.", sorted.length, scan.getNanos() / 1_000_000_000,
+                options.snapshot);
+        return true;
+    }
+
+    /**
+     * Growable array of primitive longs.
+     */
+    private static class LongList {
+        private long[] values = new long[16];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        long get(int index) {
+            return values[index];
+        }
+
+        int size() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.expium.massdelete.remover;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Orders the issues of a job so that parents are deleted before subtasks, and leaves out subtasks whose parent is
+ * being deleted or removed already. JIRA deletes subtasks along with their parent, so deleting them as well would
+ * only waste a request, or fail because they are gone. A subtask left out is reported removed when its parent is,
+ * and failed when its parent fails. Only parents found by the job are known, a subtask found before its parent is
+ * deleted on its own.
+ *
+ * Copyright 2015-2016 Expium LLC
+ * http://expium.com/
+ */
+class SubtaskPlanner {
+    // Issues that may be parents, subtasks cannot have subtasks of their own
+    private final LongHashSet removed = new LongHashSet();
+    // Subtasks waiting for each issue being deleted, null if there are none
+    private final Map<Long, List<Waiting>> deleting = new HashMap<>();
+
+    /**
+     * Leaves out subtasks whose parent is being deleted, to be reported to the listener along with it. Subtasks whose
+     * parent is removed already are added to {@code alreadyRemoved}, for the caller to report.
+     *
+     * @return the issues to delete, parents first
+     */
+    synchronized List<IssueRef> plan(List<IssueRef> issues, DeleteStrategy.Listener listener,
+            List<IssueRef> alreadyRemoved) {
+        List<IssueRef> planned = new ArrayList<>(issues.size());
+        for (IssueRef issue : issues) {
+            if (!issue.isSubtask()) {
+                planned.add(issue);
+                deleting.put(issue.getId(), null);
+            }
+        }
+        for (IssueRef issue : issues) {
+            if (!issue.isSubtask()) {
+                continue;
+            }
+            long parentId = issue.getParentId();
+            if (removed.contains(parentId)) {
+                alreadyRemoved.add(issue);
+            } else if (deleting.containsKey(parentId)) {
+                List<Waiting> subtasks = deleting.get(parentId);
+                if (subtasks == null) {
+                    subtasks = new ArrayList<>();
+                    deleting.put(parentId, subtasks);
+                }
+                subtasks.add(new Waiting(issue, listener));
+            } else {
+                planned.add(issue);
+            }
+        }
+        return planned;
+    }
+
+    /**
+     * Reports the subtasks of the issue removed.
+     */
+    void removed(IssueRef issue) {
+        List<Waiting> subtasks;
+        synchronized (this) {
+            if (issue.isSubtask()) {
+                return;
+            }
+            removed.add(issue.getId());
+            subtasks = deleting.remove(issue.getId());
+        }
+        if (subtasks != null) {
+            for (Waiting subtask : subtasks) {
+                subtask.listener.removed(subtask.issue);
+            }
+        }
+    }
+
+    /**
+     * Reports the subtasks of the issue failed too.
+     */
+    void failed(IssueRef issue) {
+        List<Waiting> subtasks;
+        synchronized (this) {
+            subtasks = issue.isSubtask() ? null : deleting.remove(issue.getId());
+        }
+        if (subtasks != null) {
+            for (Waiting subtask : subtasks) {
+                subtask.listener.failed(subtask.issue,
+                        new IllegalStateException("Parent " + issue.getKey() + " was not deleted"));
+            }
+        }
+    }
+
+    /**
+     * Forgets an issue that was planned but not started, along with its subtasks.
+     *
+     * @return how many subtasks were waiting for it, which are not reported
+     */
+    synchronized int abandon(IssueRef issue) {
+        if (issue.isSubtask()) {
+            return 0;
+        }
+        List<Waiting> subtasks = deleting.remove(issue.getId());
+        return subtasks == null ? 0 : subtasks.size();
+    }
+
+    private static class Waiting {
+        final IssueRef issue;
+        final DeleteStrategy.Listener listener;
+
+        Waiting(IssueRef issue, DeleteStrategy.Listener listener) {
+            this.issue = issue;
+            this.listener = listener;
+        }
+    }
+}
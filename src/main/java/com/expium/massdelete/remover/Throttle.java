@@ -0,0 +1,50 @@
+package com.expium.massdelete.remover;
+
+import com.google.common.util.concurrent.RateLimiter;
+
+/**
+ * What deletions wait for before starting: the rate limit, and while paused, for the pause to end. The rate limiter
+ * cannot be stopped altogether, and a rate close to zero would keep deletions waiting long after it is raised
+ * again, hence the separate pause.
+ *
+ * Copyright 2015-2016 Expium LLC
+ * http://expium.com/
+ */
+class Throttle {
+    private final RateLimiter rateLimiter;
+    private final Metrics metrics;
+
+    // Guarded by this
+    private boolean paused;
+
+    Throttle(RateLimiter rateLimiter, Metrics metrics) {
+        this.rateLimiter = rateLimiter;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Blocks while paused, then until the rate limit allows the permits.
+     */
+    void acquire(int permits) throws InterruptedException {
+        long waitStart = System.nanoTime();
+        synchronized (this) {
+            while (paused) {
+                wait();
+            }
+        }
+        rateLimiter.acquire(permits);
+        metrics.rateLimiterWaited(System.nanoTime() - waitStart);
+    }
+
+    synchronized boolean isPaused() {
+        return paused;
+    }
+
+    /**
+     * Holds back deletions that have not started yet, or lets them go on.
+     */
+    synchronized void setPaused(boolean paused) {
+        this.paused = paused;
+        notifyAll();
+    }
+}
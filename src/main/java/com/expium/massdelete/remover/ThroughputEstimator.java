@@ -0,0 +1,120 @@
+package com.expium.massdelete.remover;
+
+/**
+ * Estimates how many issues get processed per second from exponentially weighted moving averages, so that one
+ * slow page or a retry does not swing the estimate.
+ * <p>
+ * Time the delete stage spends waiting for the next page is averaged separately from the time spent deleting,
+ * since it depends on the search and not on the rate limit or parallelism. Each sample covers whatever was
+ * processed since the previous one, so partial pages and deletes still in flight are accounted for as they
+ * complete. Samples are weighted by the time they span, older ones fading out over {@link #WINDOW_SECONDS}.
+ * <p>
+ * The bounds are those of the rate measured over a sample interval, at about 95% confidence. They are only
+ * known after a few samples.
+ *
+ * Copyright 2015-2016 Expium LLC
+ * http://expium.com/
+ */
+class ThroughputEstimator {
+    private static final double WINDOW_SECONDS = 60;
+    private static final double Z = 1.96;
+    private static final int MIN_SAMPLES_FOR_BOUNDS = 3;
+
+    private long lastSampleNanos = System.nanoTime();
+    private int lastProcessed;
+    private long searchNanos;
+    private int samples;
+
+    private double currentRate;
+    private double deleteRate;
+    private double deleteRateVariance;
+    private double searchSecondsPerIssue;
+
+    /**
+     * Starts measuring from now.
+     *
+     * @param processed issues processed so far, by a previous run of a resumed removal
+     */
+    synchronized void start(int processed) {
+        lastSampleNanos = System.nanoTime();
+        lastProcessed = processed;
+        searchNanos = 0;
+    }
+
+    /**
+     * @param nanos time the delete stage waited for a page of issues
+     */
+    synchronized void searched(long nanos) {
+        searchNanos += nanos;
+    }
+
+    /**
+     * @param processed issues removed or skipped so far
+     * @return whether there is an estimate, which requires something to have been processed
+     */
+    synchronized boolean sample(int processed) {
+        int count = processed - lastProcessed;
+        if (count <= 0) {
+            return samples > 0;
+        }
+
+        long now = System.nanoTime();
+        double elapsed = Math.max(now - lastSampleNanos, 1) / 1e9;
+        double search = Math.min(searchNanos / 1e9, elapsed);
+        double rate = count / Math.max(elapsed - search, 1e-9);
+
+        if (samples == 0) {
+            deleteRate = rate;
+            searchSecondsPerIssue = search / count;
+        } else {
+            double alpha = 1 - Math.exp(-elapsed / WINDOW_SECONDS);
+            double diff = rate - deleteRate;
+            deleteRate += alpha * diff;
+            deleteRateVariance = (1 - alpha) * (deleteRateVariance + alpha * diff * diff);
+            searchSecondsPerIssue += alpha * (search / count - searchSecondsPerIssue);
+        }
+        currentRate = count / elapsed;
+        samples++;
+
+        lastSampleNanos = now;
+        lastProcessed = processed;
+        searchNanos = 0;
+        return true;
+    }
+
+    /**
+     * @return issues per second over the last sample interval
+     */
+    synchronized double getCurrentRate() {
+        return currentRate;
+    }
+
+    /**
+     * @return smoothed issues per second, including the time spent searching
+     */
+    synchronized double getRate() {
+        return withSearch(deleteRate);
+    }
+
+    synchronized boolean hasBounds() {
+        return samples >= MIN_SAMPLES_FOR_BOUNDS;
+    }
+
+    /**
+     * @return lower bound of the smoothed rate, 0 when the rate varies too much to tell
+     */
+    synchronized double getRateLow() {
+        return withSearch(deleteRate - Z * Math.sqrt(deleteRateVariance));
+    }
+
+    synchronized double getRateHigh() {
+        return withSearch(deleteRate + Z * Math.sqrt(deleteRateVariance));
+    }
+
+    private double withSearch(double deleteRate) {
+        if (deleteRate <= 0) {
+            return 0;
+        }
+        return 1 / (1 / deleteRate + searchSecondsPerIssue);
+    }
+}
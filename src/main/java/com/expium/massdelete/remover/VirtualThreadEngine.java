@@ -0,0 +1,37 @@
+package com.expium.massdelete.remover;
+
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs each issue deletion on a virtual thread of its own, which blocks on the request without holding a
+ * platform thread. The limit on deletions in flight is the only bound, so it scales to far more of them than
+ * a pool of platform threads would.
+ *
+ * Copyright 2015-2016 Expium LLC
+ * http://expium.com/
+ */
+class VirtualThreadEngine extends DeleteEngine {
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("delete-", 0).factory());
+
+    VirtualThreadEngine(JiraClientAdapter client, int parallelism) {
+        super(client, parallelism);
+    }
+
+    @Override
+    protected void start(final IssueRef issue, final Listener listener, final Map<String, String> context) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                deleteBlocking(issue, listener, context);
+            }
+        });
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
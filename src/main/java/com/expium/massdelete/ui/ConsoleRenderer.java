@@ -0,0 +1,258 @@
+package com.expium.massdelete.ui;
+
+import com.expium.massdelete.remover.IssueRef;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Writes what the removal reports on a thread of its own, so that the threads deleting issues do not wait for the
+ * console or contend for it.
+ * <p>
+ * An event for each issue goes through a ring buffer. Producers claim a slot by incrementing a counter and publish
+ * it by writing its sequence number, without locking. The renderer takes all events published every 100 ms and
+ * prints their dots at once, or logs each issue in verbose mode. The status reported after each page is kept per
+ * job, the latest replacing the previous, and logged every few seconds and once more when closing. When the buffer
+ * is full, producers wait for the renderer to catch up.
+ *
+ * Copyright 2015-2016 Expium LLC
+ * http://expium.com/
+ */
+class ConsoleRenderer implements Runnable {
+    private static final int CAPACITY = 8192;
+    private static final int MASK = CAPACITY - 1;
+    private static final long RENDER_NANOS = 100_000_000;
+    private static final long STATUS_NANOS = 5_000_000_000L;
+    private static final int DOTS_PER_LINE = 78;
+
+    private static final byte DOT = 1;
+    private static final byte REMOVING = 2;
+    private static final byte LINE_BREAK = 3;
+
+    private final Logger logger = LoggerFactory.getLogger(UI.class);
+
+    // Sequence number of the event each slot holds once published
+    private final AtomicLongArray published = new AtomicLongArray(CAPACITY);
+    private final byte[] types = new byte[CAPACITY];
+    private final IssueRef[] issues = new IssueRef[CAPACITY];
+    private final String[] jobs = new String[CAPACITY];
+    private final AtomicLong claimed = new AtomicLong();
+    private final AtomicLong consumed = new AtomicLong();
+    // Events before this sequence number are printed
+    private final AtomicLong rendered = new AtomicLong();
+
+    // By job and kind of status. Guarded by itself.
+    private final Map<String, Status> statuses = new LinkedHashMap<>();
+
+    private volatile Thread thread;
+    private volatile boolean running;
+    private int column;
+
+    ConsoleRenderer() {
+        for (int i = 0; i < CAPACITY; i++) {
+            published.set(i, -1);
+        }
+    }
+
+    /**
+     * A dot on the console for the issue.
+     */
+    void dot() {
+        publish(DOT, null);
+    }
+
+    /**
+     * The key and summary of the issue in the log.
+     */
+    void removing(IssueRef issue) {
+        publish(REMOVING, issue);
+    }
+
+    /**
+     * Ends the line of dots, for what is logged next to start on a line of its own. Waits until the dots before and
+     * the line break are printed, for a while at most.
+     */
+    void lineBreak() {
+        long sequence = publish(LINE_BREAK, null);
+        LockSupport.unpark(start());
+        long deadline = System.nanoTime() + 2 * RENDER_NANOS;
+        while (rendered.get() <= sequence && System.nanoTime() - deadline < 0) {
+            LockSupport.parkNanos(RENDER_NANOS / 100);
+        }
+    }
+
+    /**
+     * Logs the status later, unless the same kind of status of the same job is reported again before.
+     */
+    void status(String kind, Runnable log) {
+        String job = MDC.get("job");
+        synchronized (statuses) {
+            statuses.put(job + "/" + kind, new Status(job, log));
+        }
+        start();
+    }
+
+    /**
+     * Renders the events published so far, logs the latest status and stops the thread. It starts again when
+     * something is reported.
+     */
+    void close() {
+        // Holds the lock until the thread ends, so that a new one does not start rendering alongside it
+        synchronized (this) {
+            Thread current = thread;
+            if (current == null) {
+                return;
+            }
+            running = false;
+            LockSupport.unpark(current);
+            try {
+                current.join(1_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            thread = null;
+        }
+    }
+
+    @Override
+    public void run() {
+        long nextStatus = System.nanoTime() + STATUS_NANOS;
+        while (running) {
+            LockSupport.parkNanos(this, RENDER_NANOS);
+            render();
+            if (System.nanoTime() - nextStatus >= 0) {
+                renderStatus();
+                nextStatus = System.nanoTime() + STATUS_NANOS;
+            }
+        }
+        render();
+        renderStatus();
+        if (column > 0) {
+            System.out.println();
+            column = 0;
+        }
+    }
+
+    /**
+     * @return sequence number of the event
+     */
+    private long publish(byte type, IssueRef issue) {
+        long sequence = claimed.getAndIncrement();
+        while (sequence - consumed.get() >= CAPACITY) {
+            // Full, waits for the renderer rather than losing the event
+            Thread renderer = start();
+            LockSupport.unpark(renderer);
+            LockSupport.parkNanos(RENDER_NANOS / 100);
+        }
+        int slot = (int) (sequence & MASK);
+        types[slot] = type;
+        issues[slot] = issue;
+        jobs[slot] = type == REMOVING ? MDC.get("job") : null;
+        published.lazySet(slot, sequence);
+        start();
+        return sequence;
+    }
+
+    /**
+     * @return the renderer thread, started if it is not running
+     */
+    private Thread start() {
+        Thread current = thread;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            if (thread == null) {
+                running = true;
+                thread = new Thread(this, "console");
+                thread.setDaemon(true);
+                thread.start();
+            }
+            return thread;
+        }
+    }
+
+    private void render() {
+        StringBuilder dots = new StringBuilder();
+        long sequence = consumed.get();
+        while (true) {
+            int slot = (int) (sequence & MASK);
+            if (published.get(slot) != sequence) {
+                break;
+            }
+            byte type = types[slot];
+            IssueRef issue = issues[slot];
+            String job = jobs[slot];
+            issues[slot] = null;
+            jobs[slot] = null;
+            consumed.lazySet(++sequence);
+
+            if (type == DOT) {
+                dots.append('.');
+                if (++column == DOTS_PER_LINE) {
+                    dots.append(System.lineSeparator());
+                    column = 0;
+                }
+            } else if (type == LINE_BREAK) {
+                if (column > 0) {
+                    dots.append(System.lineSeparator());
+                    column = 0;
+                }
+            } else {
+                setJob(job);
+                logger.debug("Removing {} -- {}", issue.getKey(), issue.getSummary());
+            }
+        }
+        if (dots.length() > 0) {
+            System.out.print(dots);
+            System.out.flush();
+        }
+        rendered.set(sequence);
+    }
+
+    private void renderStatus() {
+        List<Status> pending;
+        synchronized (statuses) {
+            pending = new ArrayList<>(statuses.values());
+            statuses.clear();
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+        if (column > 0) {
+            System.out.println();
+            column = 0;
+        }
+        for (Status status : pending) {
+            setJob(status.job);
+            status.log.run();
+        }
+        setJob(null);
+    }
+
+    private static void setJob(String job) {
+        if (job == null) {
+            MDC.remove("job");
+        } else {
+            MDC.put("job", job);
+        }
+    }
+
+    private static class Status {
+        final String job;
+        final Runnable log;
+
+        Status(String job, Runnable log) {
+            this.job = job;
+            this.log = log;
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package com.expium.massdelete.ui;
+
+import com.expium.massdelete.BuildProperties;
+import com.expium.massdelete.StopReason;
+import com.expium.massdelete.remover.IssueRef;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.slf4j.MDC;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.lang.reflect.Array;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * Runs without anyone at the console, for schedulers and other programs: never asks, and prints the progress on
+ * standard output as JSON, one object per line, each with an "event" field telling what it reports. What the
+ * console UI logs goes to standard error, as configured by {@code LoggerConfiguration}.
+ * <p>
+ * Status events are written every few seconds, like the console UI logs them. A "stopped" event, with the reason
+ * and the exit code, is always the last one of a removal. A dry run reports its measurements and the projected
+ * times as events too, and so does --shard-status the state of each shard.
+ *
+ * Copyright 2015-2016 Expium LLC
+ * http://expium.com/
+ */
+public class HeadlessUI extends UI {
+    private final JsonFactory json = new JsonFactory();
+    private final PrintStream out = System.out;
+    // Guarded by this
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSXXX");
+
+    @Override
+    public void showWelcome(BuildProperties buildProperties) {
+    }
+
+    @Override
+    protected void printNotice() {
+    }
+
+    @Override
+    protected String askPassword() {
+        return null;
+    }
+
+    @Override
+    public boolean confirmRemoval(int total) {
+        error("Not removing " + total + " issues without --yes-expected-count");
+        return false;
+    }
+
+    @Override
+    public void removing(IssueRef issue) {
+        if (verbose) {
+            super.removing(issue);
+        }
+    }
+
+    @Override
+    public void progress(final int removed, final int skipped, final int remaining) {
+        final String job = job();
+        console.status("progress", new Runnable() {
+            @Override
+            public void run() {
+                event("progress", "job", job, "removed", removed, "skipped", skipped, "remaining", remaining);
+            }
+        });
+    }
+
+    @Override
+    public void estimateAfterBatchCompletion(final double currentRate, final double averageRate,
+            final Date estimatedCompletion, final Date earliestCompletion, final Date latestCompletion) {
+        final String job = job();
+        console.status("estimate", new Runnable() {
+            @Override
+            public void run() {
+                event("estimate", "job", job, "currentRate", currentRate, "averageRate", averageRate,
+                        "estimatedCompletion", estimatedCompletion, "earliestCompletion", earliestCompletion,
+                        "latestCompletion", latestCompletion);
+            }
+        });
+    }
+
+    @Override
+    public void connectionPool(final int leased, final int available, final int pending) {
+        console.status("connections", new Runnable() {
+            @Override
+            public void run() {
+                event("connections", "leased", leased, "available", available, "pending", pending);
+            }
+        });
+    }
+
+    @Override
+    public void rateAdjusted(final double rate, final int inFlight, final long latencyMillis) {
+        console.status("rate", new Runnable() {
+            @Override
+            public void run() {
+                event("rate", "rate", rate, "inFlight", inFlight, "latencyMillis", latencyMillis);
+            }
+        });
+    }
+
+    @Override
+    public void loadAdjusted(final double rate, final int inFlight, final long probeMillis) {
+        console.status("load", new Runnable() {
+            @Override
+            public void run() {
+                event("load", "rate", rate, "inFlight", inFlight, "probeMillis", probeMillis < 0 ? null
+                        : probeMillis);
+            }
+        });
+    }
+
+    @Override
+    public void jobStopped(String job, int removed, int skipped, int remaining) {
+        super.jobStopped(job, removed, skipped, remaining);
+        event("jobStopped", "job", job, "removed", removed, "skipped", skipped, "remaining", remaining);
+    }
+
+    @Override
+    public void sessionStopped(int removed, int skipped, int remaining, long sessionDuration) {
+        super.sessionStopped(removed, skipped, remaining, sessionDuration);
+        event("sessionStopped", "removed", removed, "skipped", skipped, "remaining", remaining, "durationSeconds",
+                sessionDuration);
+    }
+
+    @Override
+    public void shardStatus(int shard, String state, String owner, int doneBlocks, int blocks, int removed,
+            int skipped) {
+        super.shardStatus(shard, state, owner, doneBlocks, blocks, removed, skipped);
+        event("shard", "shard", shard, "state", state, "owner", owner, "doneBlocks", doneBlocks, "blocks", blocks,
+                "removed", removed, "skipped", skipped);
+    }
+
+    @Override
+    public void searchMeasured(int pages, double pagesPerSecond, long bytesPerPage, double issuesPerSecond) {
+        super.searchMeasured(pages, pagesPerSecond, bytesPerPage, issuesPerSecond);
+        event("searchMeasured", "pages", pages, "pagesPerSecond", pagesPerSecond, "bytesPerPage", bytesPerPage,
+                "issuesPerSecond", issuesPerSecond);
+    }
+
+    @Override
+    public void deleteLatencyMeasured(int probes, long medianMillis, long p90Millis) {
+        super.deleteLatencyMeasured(probes, medianMillis, p90Millis);
+        event("deleteLatencyMeasured", "probes", probes, "medianMillis", medianMillis, "p90Millis", p90Millis);
+    }
+
+    /**
+     * Written as arrays, seconds holding a row for each parallelism with a column for each rate.
+     */
+    @Override
+    public void projection(int total, int[] parallelism, double[] rates, long[][] seconds) {
+        super.projection(total, parallelism, rates, seconds);
+        event("projection", "total", total, "parallelism", parallelism, "rates", rates, "seconds", seconds);
+    }
+
+    @Override
+    public void error(String msg) {
+        super.error(msg);
+        event("error", "job", job(), "message", msg);
+    }
+
+    @Override
+    public void error(String msg, Exception e) {
+        super.error(msg, e);
+        event("error", "job", job(), "message", msg);
+    }
+
+    @Override
+    public void stopped(StopReason reason) {
+        super.stopped(reason);
+        event("stopped", "reason", reason.name(), "exitCode", reason.getExitCode());
+    }
+
+    /**
+     * @param fields names and values, those that are null left out
+     */
+    private synchronized void event(String event, Object... fields) {
+        StringWriter line = new StringWriter();
+        try (JsonGenerator generator = json.createGenerator(line)) {
+            generator.writeStartObject();
+            generator.writeStringField("event", event);
+            generator.writeStringField("time", dateFormat.format(new Date()));
+            for (int i = 0; i < fields.length; i += 2) {
+                Object value = fields[i + 1];
+                if (value instanceof Date) {
+                    value = dateFormat.format((Date) value);
+                }
+                if (value != null) {
+                    generator.writeFieldName((String) fields[i]);
+                    write(generator, value);
+                }
+            }
+            generator.writeEndObject();
+        } catch (IOException e) {
+            // Not when writing to a string
+            throw new IllegalStateException(e);
+        }
+        out.println(line);
+        out.flush();
+    }
+
+    /**
+     * Writes arrays, including those of primitives, which the generator cannot write without an object mapper.
+     */
+    private static void write(JsonGenerator generator, Object value) throws IOException {
+        if (value.getClass().isArray()) {
+            generator.writeStartArray();
+            for (int i = 0; i < Array.getLength(value); i++) {
+                write(generator, Array.get(value, i));
+            }
+            generator.writeEndArray();
+        } else {
+            generator.writeObject(value);
+        }
+    }
+
+    /**
+     * @return name of the job reporting, null unless there are several
+     */
+    private static String job() {
+        String job = MDC.get("job");
+        // Set as a prefix of log messages
+        return job == null ? null : job.substring(0, job.length() - ": ".length());
+    }
+}
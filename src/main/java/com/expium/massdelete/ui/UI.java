@@ -1,13 +1,13 @@
 package com.expium.massdelete.ui;
 
-import com.atlassian.jira.rest.client.api.RestClientException;
-import com.atlassian.jira.rest.client.api.domain.Issue;
 import com.expium.massdelete.BuildProperties;
+import com.expium.massdelete.LoggerConfiguration;
 import com.expium.massdelete.Options;
 import com.expium.massdelete.StopReason;
-import com.google.common.base.Predicates;
-import com.google.common.base.Throwables;
-import com.google.common.collect.Iterables;
+import com.expium.massdelete.remover.IssueRef;
+import com.expium.massdelete.remover.JiraErrors;
+import com.expium.massdelete.remover.RemovalListener;
+import com.google.common.base.Charsets;
 import org.kohsuke.args4j.CmdLineException;
 import org.kohsuke.args4j.CmdLineParser;
 import org.slf4j.Logger;
@@ -17,23 +17,27 @@ import java.io.BufferedReader;
 import java.io.Console;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.net.SocketTimeoutException;
+import java.nio.file.Files;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.List;
 import java.util.Scanner;
 
 /**
  * Copyright 2015-2016 Expium LLC
  * http://expium.com/
  */
-public class UI {
+public class UI implements RemovalListener {
+    private static final String PASSWORD_VARIABLE = "JIRA_PASSWORD";
+
     private final Logger logger = LoggerFactory.getLogger(UI.class);
     private final Logger fileLogger = LoggerFactory.getLogger("FILE_ONLY");
+    // Only used by the console thread
     private final SimpleDateFormat dateFormat = new SimpleDateFormat("M/d/yy hh:mm aaa");
+    final ConsoleRenderer console = new ConsoleRenderer();
 
     private boolean connectivityVerified = false;
-    private boolean verbose;
-    private int batchCounter;
+    boolean verbose;
 
     public void showWelcome(BuildProperties buildProperties) {
         String version = buildProperties.getVersion();
@@ -51,7 +55,10 @@ public class UI {
         System.out.println("");
     }
 
-    public Options getOptions(String[] args) {
+    /**
+     * Exits when the arguments are not valid, after printing the usage.
+     */
+    public static Options parseOptions(String[] args) {
         Options options = new Options();
         CmdLineParser parser = new CmdLineParser(options);
 
@@ -66,9 +73,108 @@ public class UI {
             printUsage();
             System.exit(0);
         }
+        boolean searching = !options.filters.isEmpty() || !options.filterIds.isEmpty() || !options.jqls.isEmpty()
+                || options.jobFile != null;
+        if (searching == (options.fromSnapshot != null)) {
+            System.err.println("Either a filter, JQL query or job file, or a snapshot to remove from is required");
+            printUsage();
+            System.exit(1);
+        }
+        if (options.dryRun != null && options.snapshot != null) {
+            System.err.println("A dry run and a snapshot cannot be done at once");
+            printUsage();
+            System.exit(1);
+        }
+        if ((options.shards != 0 || options.shardStatus) && options.fromSnapshot == null) {
+            System.err.println("Shards are only supported when removing from a snapshot");
+            printUsage();
+            System.exit(1);
+        }
+        if (options.shards < 0) {
+            System.err.println("Shards must not be negative");
+            printUsage();
+            System.exit(1);
+        }
+        if (options.fromSnapshot != null && options.journal != null) {
+            System.err.println("Removing from a snapshot needs no journal, it can simply be run again");
+            printUsage();
+            System.exit(1);
+        }
+        if (options.archive != null && (options.fromSnapshot != null || options.dryRun != null
+                || options.snapshot != null)) {
+            System.err.println("Archiving is only supported when removing the issues found by a search");
+            printUsage();
+            System.exit(1);
+        }
+        if (options.parallelism < 1) {
+            System.err.println("Parallelism must be at least 1");
+            printUsage();
+            System.exit(1);
+        }
+        if (options.connections < 0) {
+            System.err.println("Connections must not be negative");
+            printUsage();
+            System.exit(1);
+        }
+        if (options.keepAliveSeconds < 1) {
+            System.err.println("Keep-alive must be at least 1 second");
+            printUsage();
+            System.exit(1);
+        }
+        if (options.prefetch < 0) {
+            System.err.println("Prefetch must not be negative");
+            printUsage();
+            System.exit(1);
+        }
+        if (options.pauseLatencyMillis < 0) {
+            System.err.println("Pause latency must not be negative");
+            printUsage();
+            System.exit(1);
+        }
+        if (options.yesExpectedCount != null && options.yesExpectedCount < 0) {
+            System.err.println("The expected count must not be negative");
+            printUsage();
+            System.exit(1);
+        }
+        if (options.headless && options.yesExpectedCount == null && options.dryRun == null
+                && options.snapshot == null && !options.shardStatus) {
+            System.err.println("Running headless requires --yes-expected-count, unless not removing anything");
+            printUsage();
+            System.exit(1);
+        }
+        return options;
+    }
 
+    /**
+     * Gets the password from the file or the environment, or asks for it.
+     *
+     * @return false if there is no password
+     */
+    public boolean setUp(Options options) {
         this.verbose = options.verbose;
+        printNotice();
 
+        if (options.passwordFile != null) {
+            try {
+                List<String> lines = Files.readAllLines(options.passwordFile.toPath(), Charsets.UTF_8);
+                options.password = lines.isEmpty() ? "" : lines.get(0);
+            } catch (IOException e) {
+                System.err.println("Unable to read the password from " + options.passwordFile + ": " + e);
+                return false;
+            }
+        } else if (System.getenv(PASSWORD_VARIABLE) != null) {
+            options.password = System.getenv(PASSWORD_VARIABLE);
+        } else {
+            options.password = askPassword();
+            if (options.password == null) {
+                System.err.println("No password given by --password-file or " + PASSWORD_VARIABLE);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    protected void printNotice() {
         System.out.println("This program may be aborted at any time by pressing Ctrl+C, closing the");
         System.out.println("terminal or terminating the process from task manager.");
         System.out.println();
@@ -76,23 +182,30 @@ public class UI {
         System.out.println("progress. Closing it will terminate the process.");
         System.out.println();
         System.out.println("If an error occurs or the job is terminated in some other way, you can");
-        System.out.println("just run it again to retry/resume.");
+        System.out.println("just run it again to retry/resume. With the --journal option, it continues");
+        System.out.println("exactly where it stopped.");
         System.out.println();
+    }
 
+    /**
+     * @return null if the password cannot be asked for
+     */
+    protected String askPassword() {
+        String password;
         Console console = System.console();
         if (console == null) {
             // Running in IDE
             try {
                 System.out.print("JIRA password: ");
-                options.password = new BufferedReader(new InputStreamReader(System.in)).readLine();
+                password = new BufferedReader(new InputStreamReader(System.in)).readLine();
             } catch (IOException e) {
                 throw new RuntimeException(e);
             }
         } else {
-            options.password = new String(System.console().readPassword("JIRA password: "));
+            password = new String(System.console().readPassword("JIRA password: "));
         }
         System.out.println();
-        return options;
+        return password;
     }
 
     private static void printUsage() {
@@ -101,22 +214,22 @@ public class UI {
         System.err.println();
     }
 
+    @Override
     public void interrupted() {
         logger.error("Interrupted, aborting");
-        System.exit(-1);
     }
 
+    @Override
     public void jiraRequestFailed(String operation, Throwable e) {
         if (!verbose) {
-            // Flush the line, so the log entry appears on a line of its own, not mixed up with the dots.
-            System.out.println();
+            // End the line first, so that the log entry does not continue the dots.
+            console.lineBreak();
         }
 
         String msg = "Unable to " + operation;
 
-        if (e instanceof RestClientException) {
-            RestClientException re = (RestClientException) e;
-            int status = re.getStatusCode().or(-1);
+        int status = JiraErrors.statusCode(e);
+        if (status != -1) {
             if (status == 401) {
                 msg += " - unauthorized. ";
                 if (!connectivityVerified) {
@@ -143,7 +256,7 @@ public class UI {
                 fileLogger.error("Error detail", e);
                 return;
             }
-        } else if (isTimeout(e)) {
+        } else if (JiraErrors.isTimeout(e)) {
             logger.error(msg + " - request timed out");
             return;
         }
@@ -152,6 +265,7 @@ public class UI {
         fileLogger.error("Error detail", e);
     }
 
+    @Override
     public boolean confirmRemoval(int total) {
         boolean confirmed;
         do {
@@ -169,90 +283,190 @@ public class UI {
         return true;
     }
 
-    public void estimateAfterBatchCompletion(long batchTime, int queryBatchSize, Date estimatedCompletion) {
-        logger.info("Took {} ms to process {} issues. Estimated finish time at the current rate: {}.",
-                batchTime, queryBatchSize, dateFormat.format(estimatedCompletion));
+    @Override
+    public void resuming(int removed, int skipped) {
+        logger.info("Continuing a previous removal that has removed {} and skipped {} issues so far.", removed,
+                skipped);
     }
 
-    public void batchStarting() {
-        batchCounter = 0;
+    /**
+     * Logged along with the rest of the status every few seconds, unless reported again before.
+     */
+    @Override
+    public void estimateAfterBatchCompletion(final double currentRate, final double averageRate,
+            final Date estimatedCompletion, final Date earliestCompletion, final Date latestCompletion) {
+        console.status("estimate", new Runnable() {
+            @Override
+            public void run() {
+                String rates = String.format("%.1f issues/s now, %.1f/s on average", currentRate, averageRate);
+                if (estimatedCompletion == null) {
+                    logger.info("Processing {}.", rates);
+                } else if (earliestCompletion == null) {
+                    logger.info("Processing {}. Estimated finish time: {}.", rates,
+                            dateFormat.format(estimatedCompletion));
+                } else if (latestCompletion == null) {
+                    logger.info("Processing {}. Estimated finish time: {}, not before {}.", rates,
+                            dateFormat.format(estimatedCompletion), dateFormat.format(earliestCompletion));
+                } else {
+                    logger.info("Processing {}. Estimated finish time: {} (likely between {} and {}).", rates,
+                            dateFormat.format(estimatedCompletion), dateFormat.format(earliestCompletion),
+                            dateFormat.format(latestCompletion));
+                }
+            }
+        });
     }
 
-    public void removing(Issue issue) {
-        batchCounter++;
+    /**
+     * Returns right away, the console thread prints a dot or logs the issue.
+     */
+    @Override
+    public void removing(IssueRef issue) {
         if (verbose) {
-            logger.debug("Removing " + issue.getKey() + " -- " + issue.getSummary());
+            console.removing(issue);
         } else {
             // Provide some feedback
-            System.out.print(".");
-            if ((batchCounter % 78) == 0) {
-                System.out.println();
-            }
+            console.dot();
         }
     }
 
-    public void removalFailed() {
-        batchCounter = 0; // Start from full line
+    @Override
+    public void progress(final int removed, final int skipped, final int remaining) {
+        console.status("progress", new Runnable() {
+            @Override
+            public void run() {
+                logger.info("{} issues removed, {} skipped, {} remaining", removed, skipped, remaining);
+            }
+        });
     }
 
-    public void batchCompleted() {
-        if (!verbose) {
-            System.out.println();
-        }
+    @Override
+    public void connectionPool(final int leased, final int available, final int pending) {
+        console.status("connections", new Runnable() {
+            @Override
+            public void run() {
+                logger.info("HTTP connections: {} in use, {} available, {} requests waiting for one", leased,
+                        available, pending);
+            }
+        });
     }
 
-    public void progress(int removed, int skipped, int remaining) {
-        logger.info("{} issues removed, {} skipped, {} remaining", removed, skipped, remaining);
+    @Override
+    public void rateAdjusted(final double rate, final int inFlight, final long latencyMillis) {
+        console.status("rate", new Runnable() {
+            @Override
+            public void run() {
+                logger.info("Current rate {}/s with up to {} deletions in flight, 95th percentile latency {} ms",
+                        String.format("%.1f", rate), inFlight, latencyMillis);
+            }
+        });
+    }
+
+    @Override
+    public void loadAdjusted(final double rate, final int inFlight, final long probeMillis) {
+        console.status("load", new Runnable() {
+            @Override
+            public void run() {
+                if (probeMillis < 0) {
+                    logger.info("Allowing up to {}/s with up to {} deletions in flight", String.format("%.1f", rate),
+                            inFlight);
+                } else {
+                    logger.info("JIRA responds in {} ms, allowing up to {}/s with up to {} deletions in flight",
+                            probeMillis, String.format("%.1f", rate), inFlight);
+                }
+            }
+        });
     }
 
+    @Override
+    public void jobStopped(String job, int removed, int skipped, int remaining) {
+        logger.info("{}: {} removed, {} skipped, {} unprocessed", job, removed, skipped, remaining);
+    }
+
+    @Override
     public void sessionStopped(int removed, int skipped, int remaining, long sessionDuration) {
         logger.info("{} removed, {} skipped, {} unprocessed in {}", removed, skipped, remaining,
-                String.format("%d:%02d:%02d", sessionDuration / 3600, (sessionDuration % 3600) / 60,
-                        (sessionDuration % 60)));
+                formatDuration(sessionDuration));
+    }
+
+    @Override
+    public void shardStatus(int shard, String state, String owner, int doneBlocks, int blocks, int removed,
+            int skipped) {
+        logger.info("Shard {}: {}{}, {} of {} blocks done, {} removed, {} skipped", shard, state,
+                owner == null ? "" : " by " + owner, doneBlocks, blocks, removed, skipped);
+    }
+
+    @Override
+    public void searchMeasured(int pages, double pagesPerSecond, long bytesPerPage, double issuesPerSecond) {
+        logger.info("Searched {} pages at {} pages/s ({} issues/s), {} KB per page on average", pages,
+                String.format("%.1f", pagesPerSecond), String.format("%.0f", issuesPerSecond),
+                String.format("%.1f", bytesPerPage / 1024.0));
+    }
+
+    @Override
+    public void deleteLatencyMeasured(int probes, long medianMillis, long p90Millis) {
+        logger.info("Getting {} sample issues took {} ms (median), {} ms (90th percentile). Deleting takes longer.",
+                probes, medianMillis, p90Millis);
+    }
+
+    @Override
+    public void projection(int total, int[] parallelism, double[] rates, long[][] seconds) {
+        StringBuilder table = new StringBuilder(String.format("%-12s", "Parallelism"));
+        for (double rate : rates) {
+            String column = rate == Math.rint(rate) ? String.valueOf((long) rate) : String.valueOf(rate);
+            table.append(String.format("%12s", column + "/s"));
+        }
+        for (int i = 0; i < parallelism.length; i++) {
+            table.append(String.format("%n%-12d", parallelism[i]));
+            for (int j = 0; j < rates.length; j++) {
+                table.append(String.format("%12s", formatDuration(seconds[i][j])));
+            }
+        }
+        logger.info("Projected time to remove {} issues (a lower bound) by --parallelism and --max-per-second:{}{}",
+                total, System.lineSeparator(), table);
+    }
+
+    private static String formatDuration(long seconds) {
+        return String.format("%d:%02d:%02d", seconds / 3600, (seconds % 3600) / 60, (seconds % 60));
     }
 
+    @Override
     public void info(String msg, Object... args) {
         logger.info(msg, args);
     }
 
+    @Override
     public void warn(String msg, Object... args) {
         logger.warn(msg, args);
     }
 
+    @Override
     public void error(String msg) {
         logger.error(msg);
     }
 
+    @Override
     public void error(String msg, Exception e) {
         logger.error(msg);
         fileLogger.error("Error detail", e);
     }
 
-    public static boolean isTimeout(Throwable e) {
-        return Iterables
-                .any(Throwables.getCausalChain(e), Predicates.instanceOf(SocketTimeoutException.class));
-    }
-
+    @Override
     public void connectivityVerified() {
         this.connectivityVerified = true;
     }
 
+    /**
+     * Prints what the console thread has not printed yet, and waits for the log file to be written.
+     */
+    @Override
+    public void close() {
+        console.close();
+        LoggerConfiguration.flush();
+    }
+
+    @Override
     public void stopped(StopReason reason) {
-        switch (reason) {
-        case ERROR:
-            System.exit(-1);
-        case NO_CONNECTION_TO_JIRA:
-            System.exit(1);
-        case FILTER_NOT_FOUND:
-            System.exit(2);
-        case ISSUE_SEARCH_FAILED:
-            System.exit(3);
-        case USER_DID_NOT_CONFIRM_REMOVAL:
-        case NO_MATCHING_ISSUES:
-        case COMPLETED:
-        case NOTHING_REMOVED_IN_BATCH:
-            System.exit(0);
-        }
+        close();
     }
 
 }
@@ -0,0 +1,149 @@
+package com.expium.massdelete.remover;
+
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Copyright 2015-2016 Expium LLC
+ * http://expium.com/
+ */
+public class DeleteWorkerPoolTest {
+    private static final int PARALLELISM = 3;
+    private static final long BLOCKED_MILLIS = 200;
+
+    private final JiraClientAdapter client = mock(JiraClientAdapter.class);
+    private final DeleteWorkerPool pool = new DeleteWorkerPool(client, PARALLELISM);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final AtomicInteger started = new AtomicInteger();
+    private final RecordingListener listener = new RecordingListener();
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        pool.close();
+    }
+
+    @Test(timeout = 10_000)
+    public void submitWaitsWhileAllWorkersBusy() throws Exception {
+        blockDeletes();
+        for (int i = 0; i < PARALLELISM; i++) {
+            pool.submit(issue("TEST-" + i), listener);
+        }
+        final AtomicBoolean submitted = new AtomicBoolean();
+        Thread next = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    pool.submit(issue("TEST-" + PARALLELISM), listener);
+                    submitted.set(true);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        next.start();
+        next.join(BLOCKED_MILLIS);
+        assertFalse(submitted.get());
+        assertEquals(PARALLELISM, started.get());
+
+        release.countDown();
+        next.join();
+        pool.awaitIdle();
+        assertTrue(submitted.get());
+        assertEquals(PARALLELISM + 1, listener.removed.size());
+    }
+
+    @Test(timeout = 10_000)
+    public void awaitIdleWaitsForDeletesInFlight() throws Exception {
+        blockDeletes();
+        pool.submit(issue("TEST-1"), listener);
+        pool.submit(issue("TEST-2"), listener);
+        final AtomicInteger removedWhenIdle = new AtomicInteger(-1);
+        Thread waiting = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    pool.awaitIdle();
+                    removedWhenIdle.set(listener.removed.size());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        waiting.start();
+        waiting.join(BLOCKED_MILLIS);
+        assertEquals(-1, removedWhenIdle.get());
+
+        release.countDown();
+        waiting.join();
+        assertEquals(2, removedWhenIdle.get());
+        // Idle again, and all workers free
+        pool.awaitIdle();
+    }
+
+    @Test(timeout = 10_000)
+    public void failureReportedWhileOthersGoOn() throws Exception {
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Exception {
+                if ("TEST-2".equals(((IssueRef) invocation.getArguments()[0]).getKey())) {
+                    throw new IllegalStateException("HTTP 500");
+                }
+                return null;
+            }
+        }).when(client).delete(any(IssueRef.class));
+        for (int i = 1; i <= 10; i++) {
+            pool.submit(issue("TEST-" + i), listener);
+        }
+        pool.awaitIdle();
+        assertEquals(Collections.singleton("TEST-2"), listener.failed);
+        assertEquals(9, listener.removed.size());
+    }
+
+    private void blockDeletes() throws Exception {
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws InterruptedException {
+                started.incrementAndGet();
+                release.await();
+                return null;
+            }
+        }).when(client).delete(any(IssueRef.class));
+    }
+
+    static IssueRef issue(String key) {
+        return new IssueRef(Long.parseLong(key.substring(key.indexOf('-') + 1)), key, null);
+    }
+
+    private static class RecordingListener implements DeleteWorkerPool.Listener {
+        final Set<String> removed = Collections.synchronizedSet(new HashSet<String>());
+        final Set<String> failed = Collections.synchronizedSet(new HashSet<String>());
+
+        @Override
+        public void removed(IssueRef issue) {
+            removed.add(issue.getKey());
+        }
+
+        @Override
+        public void failed(IssueRef issue, Exception e) {
+            failed.add(issue.getKey());
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.expium.massdelete.remover;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Copyright 2015-2016 Expium LLC
+ * http://expium.com/
+ */
+public class IssueKeySetTest {
+    // Encoded as numbers, and kept as they are
+    private static final List<String> KEYS = Arrays.asList("PROJ-1", "PROJ-0", "PROJ-1099511627775", "AB-7",
+            "A-B-12", "PROJ-007", "PROJ-", "-5", "nodash", "PROJ-12a", "PROJ-1099511627776", "PROJ-1234567890123");
+
+    @Test
+    public void keysFoundAsAdded() {
+        IssueKeySet set = new IssueKeySet();
+        for (String key : KEYS) {
+            assertFalse(key, set.contains(key));
+            assertTrue(key, set.add(key));
+            assertTrue(key, set.contains(key));
+            assertFalse(key, set.add(key));
+        }
+        assertEquals(KEYS.size(), set.size());
+        assertFalse(set.contains("PROJ-7"));
+        assertFalse(set.contains("AB-1"));
+        assertFalse(set.contains("OTHER-1"));
+        assertFalse(set.contains("PROJ-07"));
+    }
+
+    @Test
+    public void iteratesOverTheSameKeys() {
+        IssueKeySet set = new IssueKeySet(KEYS.size());
+        for (String key : KEYS) {
+            set.add(key);
+        }
+        List<String> keys = new ArrayList<>();
+        for (String key : set) {
+            keys.add(key);
+        }
+        List<String> expected = new ArrayList<>(KEYS);
+        Collections.sort(expected);
+        Collections.sort(keys);
+        assertEquals(expected, keys);
+    }
+
+    @Test
+    public void projectsInterleaved() {
+        IssueKeySet set = new IssueKeySet();
+        for (int i = 1; i <= 1000; i++) {
+            set.add("AAA-" + i);
+            set.add("BB-" + i);
+            set.add("AAAA-" + i);
+        }
+        assertEquals(3000, set.size());
+        assertTrue(set.contains("AAA-1000"));
+        assertTrue(set.contains("BB-1"));
+        assertTrue(set.contains("AAAA-500"));
+        assertFalse(set.contains("AAA-1001"));
+        assertFalse(set.contains("A-1"));
+    }
+}
@@ -0,0 +1,55 @@
+package com.expium.massdelete.remover;
+
+import com.expium.massdelete.Options;
+import com.expium.massdelete.PagingMode;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Copyright 2015-2016 Expium LLC
+ * http://expium.com/
+ */
+public class IssueScanTest {
+    @Test
+    public void keysetFindsAllPages() throws IOException {
+        assertFindsAll(PagingMode.ID_ASC);
+    }
+
+    @Test
+    public void keysetDescendingFindsAllPages() throws IOException {
+        assertFindsAll(PagingMode.ID_DESC);
+    }
+
+    @Test
+    public void offsetFindsAllPages() throws IOException {
+        assertFindsAll(PagingMode.OFFSET);
+    }
+
+    private static void assertFindsAll(PagingMode paging) throws IOException {
+        Options options = new Options();
+        options.paging = paging;
+        options.queryBatchSize = 10;
+        PagingSearcher searcher = new PagingSearcher(35, false);
+        final List<Long> found = new ArrayList<>();
+        boolean completed = new IssueScan(searcher, options).run("project = TEST", new IssueScan.Listener() {
+            @Override
+            public void found(IssueRef issue) {
+                found.add(issue.getId());
+            }
+        });
+
+        assertTrue(completed);
+        assertEquals(35, found.size());
+        for (long id = 1; id <= 35; id++) {
+            assertTrue("Missing " + id, found.contains(id));
+        }
+        // Four full pages and the empty one after them
+        assertEquals(5, searcher.getSearches());
+    }
+}
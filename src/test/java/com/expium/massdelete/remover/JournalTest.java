@@ -0,0 +1,153 @@
+package com.expium.massdelete.remover;
+
+import com.google.common.base.Charsets;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Copyright 2015-2016 Expium LLC
+ * http://expium.com/
+ */
+public class JournalTest {
+    private static final String JQL = "project = TEST";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<String> errors = new ArrayList<>();
+    private final RemovalListener ui = new QuietListener() {
+        @Override
+        public void error(String msg, Exception e) {
+            errors.add(msg);
+        }
+    };
+
+    private Path file;
+
+    @Before
+    public void setUp() {
+        file = folder.getRoot().toPath().resolve("journal.txt");
+    }
+
+    @Test
+    public void newJournal() throws IOException {
+        try (Journal journal = Journal.open(ui, file, JQL)) {
+            assertFalse(journal.isResumed());
+            assertEquals(0, journal.getRemoved());
+            assertEquals(-1, journal.getCursor());
+            assertFalse(journal.getSkippedKeys().iterator().hasNext());
+        }
+    }
+
+    @Test
+    public void resumedWhereStopped() throws IOException {
+        record();
+        try (Journal journal = Journal.open(ui, file, JQL)) {
+            assertResumed(journal);
+            journal.removed("TEST-6");
+        }
+        // Compacted when resumed, and counting on
+        try (Journal journal = Journal.open(ui, file, JQL)) {
+            assertEquals(4, journal.getRemoved());
+        }
+    }
+
+    @Test
+    public void otherFilterStartsOver() throws IOException {
+        record();
+        try (Journal journal = Journal.open(ui, file, "project = OTHER")) {
+            assertFalse(journal.isResumed());
+            assertEquals(0, journal.getRemoved());
+            assertEquals(-1, journal.getCursor());
+        }
+    }
+
+    @Test
+    public void completedStartsOver() throws IOException {
+        record();
+        try (Journal journal = Journal.open(ui, file, JQL)) {
+            journal.complete();
+        }
+        try (Journal journal = Journal.open(ui, file, JQL)) {
+            assertFalse(journal.isResumed());
+            assertEquals(0, journal.getRemoved());
+        }
+    }
+
+    @Test
+    public void partialLastLineIgnored() throws IOException {
+        record();
+        Files.write(file, "R\tTEST-7\nS\tTES".getBytes(Charsets.UTF_8), StandardOpenOption.APPEND);
+        try (Journal journal = Journal.open(ui, file, JQL)) {
+            assertTrue(journal.isResumed());
+            assertEquals(4, journal.getRemoved());
+            assertEquals(Arrays.asList("TEST-2", "TEST-4"), sorted(journal.getSkippedKeys()));
+        }
+    }
+
+    @Test
+    public void writeFailureStopsRecording() throws IOException {
+        try (Journal journal = Journal.open(ui, file, JQL)) {
+            journal.removed("TEST-1");
+            // An interrupt closes the channel while writing. The key is longer than the buffer to be written at once.
+            Thread.currentThread().interrupt();
+            try {
+                journal.skipped("TEST-" + new String(new char[100_000]).replace('\0', '2'));
+            } finally {
+                Thread.interrupted();
+            }
+            assertTrue(journal.isFailed());
+            assertEquals(1, errors.size());
+            journal.removed("TEST-3");
+            journal.checkpoint(10_003);
+        }
+        assertEquals(1, errors.size());
+        try (Journal journal = Journal.open(ui, file, JQL)) {
+            assertFalse(journal.isFailed());
+            assertTrue(journal.isResumed());
+            assertEquals(0, journal.getRemoved());
+        }
+    }
+
+    private void record() throws IOException {
+        try (Journal journal = Journal.open(ui, file, JQL)) {
+            journal.removed("TEST-1");
+            journal.skipped("TEST-2");
+            journal.removed("TEST-3");
+            journal.skipped("TEST-4");
+            journal.checkpoint(10_004);
+            journal.removed("TEST-5");
+        }
+    }
+
+    private static void assertResumed(Journal journal) {
+        assertTrue(journal.isResumed());
+        assertEquals(3, journal.getRemoved());
+        assertEquals(10_004, journal.getCursor());
+        assertEquals(Arrays.asList("TEST-2", "TEST-4"), sorted(journal.getSkippedKeys()));
+    }
+
+    private static List<String> sorted(Iterable<String> keys) {
+        List<String> list = new ArrayList<>();
+        for (String key : keys) {
+            list.add(key);
+        }
+        Collections.sort(list);
+        return list;
+    }
+}
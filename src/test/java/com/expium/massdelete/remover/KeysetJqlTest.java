@@ -0,0 +1,49 @@
+package com.expium.massdelete.remover;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Copyright 2015-2016 Expium LLC
+ * http://expium.com/
+ */
+public class KeysetJqlTest {
+    @Test
+    public void pagesAfterTheLastId() {
+        KeysetJql jql = new KeysetJql("project = A OR project = B ORDER BY created DESC", false);
+        assertEquals("(project = A OR project = B) ORDER BY id ASC", jql.first());
+        assertEquals("(project = A OR project = B) AND id > 10500 ORDER BY id ASC", jql.after(10500));
+    }
+
+    @Test
+    public void descending() {
+        KeysetJql jql = new KeysetJql("project = A", true);
+        assertEquals("(project = A) ORDER BY id DESC", jql.first());
+        assertEquals("(project = A) AND id < 10500 ORDER BY id DESC", jql.after(10500));
+    }
+
+    @Test
+    public void withoutCondition() {
+        assertEquals("ORDER BY id ASC", new KeysetJql("", false).first());
+        assertEquals("id > 7 ORDER BY id ASC", new KeysetJql(null, false).after(7));
+        assertEquals("id > 7 ORDER BY id ASC", new KeysetJql("order by key", false).after(7));
+    }
+
+    @Test
+    public void orderByStripped() {
+        assertEquals("project = A ", KeysetJql.stripOrderBy("project = A ORDER BY rank"));
+        assertEquals("project = A ", KeysetJql.stripOrderBy("project = A order\n  by rank, key"));
+        assertEquals("(project = A)", KeysetJql.stripOrderBy("(project = A)ORDER BY rank"));
+    }
+
+    @Test
+    public void orderByInsideQuotesOrWordsKept() {
+        String[] kept = { "summary ~ \"order by\"", "summary ~ 'sort \\' order by'", "reorder = by",
+                "labels = orderby", "project = border BY" };
+        for (String jql : kept) {
+            assertEquals(jql, KeysetJql.stripOrderBy(jql));
+        }
+        assertEquals("summary ~ \"order by\" ", KeysetJql.stripOrderBy("summary ~ \"order by\" ORDER BY id"));
+    }
+}
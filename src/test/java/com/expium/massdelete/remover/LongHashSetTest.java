@@ -0,0 +1,76 @@
+package com.expium.massdelete.remover;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Copyright 2015-2016 Expium LLC
+ * http://expium.com/
+ */
+public class LongHashSetTest {
+    @Test
+    public void zeroAndNegativeValues() {
+        LongHashSet set = new LongHashSet();
+        assertFalse(set.contains(0));
+        assertTrue(set.add(0));
+        assertFalse(set.add(0));
+        assertTrue(set.add(-1));
+        assertTrue(set.add(Long.MIN_VALUE));
+        assertTrue(set.contains(0));
+        assertTrue(set.contains(-1));
+        assertTrue(set.contains(Long.MIN_VALUE));
+        assertFalse(set.contains(1));
+        assertEquals(3, set.size());
+    }
+
+    @Test
+    public void sameAsHashSetAcrossResizes() {
+        LongHashSet set = new LongHashSet();
+        Set<Long> expected = new HashSet<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            // Sequential runs, like issue numbers, and some repeats
+            long value = random.nextInt(10) == 0 ? random.nextLong() : random.nextInt(80_000);
+            assertEquals(expected.add(value), set.add(value));
+        }
+        assertEquals(expected.size(), set.size());
+        for (long value = -10; value < 90_000; value++) {
+            assertEquals(expected.contains(value), set.contains(value));
+        }
+
+        long[] values = set.toArray();
+        assertEquals(expected.size(), values.length);
+        Set<Long> returned = new HashSet<>();
+        for (long value : values) {
+            returned.add(value);
+        }
+        assertEquals(expected, returned);
+    }
+
+    @Test
+    public void forEachVisitsEachOnce() {
+        LongHashSet set = new LongHashSet(3);
+        for (long value : new long[] { 0, 5, 17, 1L << 40, 5 }) {
+            set.add(value);
+        }
+        final long[] visited = new long[set.size()];
+        set.forEach(new LongHashSet.Visitor() {
+            private int i;
+
+            @Override
+            public void visit(long value) {
+                visited[i++] = value;
+            }
+        });
+        Arrays.sort(visited);
+        assertEquals(Arrays.toString(new long[] { 0, 5, 17, 1L << 40 }), Arrays.toString(visited));
+    }
+}
@@ -0,0 +1,61 @@
+package com.expium.massdelete.remover;
+
+import com.google.common.base.Charsets;
+import com.google.common.util.concurrent.RateLimiter;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Copyright 2015-2016 Expium LLC
+ * http://expium.com/
+ */
+public class MetricsTest {
+    private Metrics metrics;
+
+    @Before
+    public void setUp() {
+        metrics = new Metrics(RateLimiter.create(10));
+        RemovalProgress first = new RemovalProgress();
+        first.restore(3, Arrays.asList("TEST-1"));
+        first.setRemaining(5);
+        RemovalProgress second = new RemovalProgress();
+        second.restore(4, Arrays.<String>asList());
+        second.setRemaining(2);
+        metrics.add(first);
+        metrics.add(second);
+        metrics.sessionStarted();
+    }
+
+    @Test
+    public void summarySumsJobs() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        metrics.writeSummary(out);
+        String summary = new String(out.toByteArray(), Charsets.UTF_8);
+        assertTrue(summary, summary.contains("\"removed\" : 7"));
+        assertTrue(summary, summary.contains("\"skipped\" : 1"));
+        assertTrue(summary, summary.contains("\"remaining\" : 7"));
+    }
+
+    @Test
+    public void prometheusSumsJobs() throws IOException {
+        StringWriter out = new StringWriter();
+        metrics.writePrometheus(out);
+        String text = out.toString();
+        assertTrue(text, text.contains("massdelete_issues_removed_total 7\n"));
+        assertTrue(text, text.contains("massdelete_issues_skipped_total 1\n"));
+        assertTrue(text, text.contains("massdelete_issues_remaining 7\n"));
+    }
+
+    @Test
+    public void removedBeforeSessionNotCountedInRate() {
+        assertEquals(0, metrics.getDeletesPerSecond(), 0);
+    }
+}
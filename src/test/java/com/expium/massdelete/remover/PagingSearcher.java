@@ -0,0 +1,60 @@
+package com.expium.massdelete.remover;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Searches a fixed list of issues like JIRA would, honoring the id bound and order written by {@link KeysetJql}
+ * as well as the offset, so that paging mistakes show up as missing or repeated issues.
+ *
+ * Copyright 2015-2016 Expium LLC
+ * http://expium.com/
+ */
+class PagingSearcher implements IssueSearcher {
+    private static final Pattern ID_BOUND = Pattern.compile("\\bid ([<>]) (\\d+)");
+
+    private final List<IssueRef> issues = new ArrayList<>();
+    private int searches;
+
+    /**
+     * @param count issues with ids 1 to count, the odd ones subtasks of the one before if withSubtasks
+     */
+    PagingSearcher(int count, boolean withSubtasks) {
+        for (long id = 1; id <= count; id++) {
+            long parentId = withSubtasks && id % 2 == 1 && id > 1 ? id - 1 : 0;
+            issues.add(new IssueRef(id, "TEST-" + id, null, parentId, null));
+        }
+    }
+
+    @Override
+    public KeySearchResult search(String jql, int maxResults, int offset) {
+        searches++;
+        List<IssueRef> matching = new ArrayList<>();
+        Matcher bound = ID_BOUND.matcher(jql);
+        boolean found = bound.find();
+        for (IssueRef issue : issues) {
+            if (!found || (bound.group(1).equals(">") ? issue.getId() > Long.parseLong(bound.group(2))
+                    : issue.getId() < Long.parseLong(bound.group(2)))) {
+                matching.add(issue);
+            }
+        }
+        if (jql.endsWith("ORDER BY id DESC")) {
+            Collections.reverse(matching);
+        }
+        List<IssueRef> page = matching.subList(Math.min(offset, matching.size()),
+                Math.min(offset + maxResults, matching.size()));
+        return new KeySearchResult(matching.size(), new ArrayList<>(page));
+    }
+
+    @Override
+    public long getSearchResponseBytes() {
+        return 0;
+    }
+
+    int getSearches() {
+        return searches;
+    }
+}
@@ -0,0 +1,108 @@
+package com.expium.massdelete.remover;
+
+import com.expium.massdelete.StopReason;
+
+import java.util.Date;
+
+/**
+ * Confirms and otherwise ignores what the removal reports.
+ *
+ * Copyright 2015-2016 Expium LLC
+ * http://expium.com/
+ */
+class QuietListener implements RemovalListener {
+    @Override
+    public void connectivityVerified() {
+    }
+
+    @Override
+    public void jiraRequestFailed(String operation, Throwable e) {
+    }
+
+    @Override
+    public boolean confirmRemoval(int total) {
+        return true;
+    }
+
+    @Override
+    public void resuming(int removed, int skipped) {
+    }
+
+    @Override
+    public void removing(IssueRef issue) {
+    }
+
+    @Override
+    public void progress(int removed, int skipped, int remaining) {
+    }
+
+    @Override
+    public void estimateAfterBatchCompletion(double currentRate, double averageRate, Date estimatedCompletion,
+            Date earliestCompletion, Date latestCompletion) {
+    }
+
+    @Override
+    public void connectionPool(int leased, int available, int pending) {
+    }
+
+    @Override
+    public void rateAdjusted(double rate, int inFlight, long latencyMillis) {
+    }
+
+    @Override
+    public void loadAdjusted(double rate, int inFlight, long probeMillis) {
+    }
+
+    @Override
+    public void jobStopped(String job, int removed, int skipped, int remaining) {
+    }
+
+    @Override
+    public void sessionStopped(int removed, int skipped, int remaining, long sessionDuration) {
+    }
+
+    @Override
+    public void shardStatus(int shard, String state, String owner, int doneBlocks, int blocks, int removed,
+            int skipped) {
+    }
+
+    @Override
+    public void searchMeasured(int pages, double pagesPerSecond, long bytesPerPage, double issuesPerSecond) {
+    }
+
+    @Override
+    public void deleteLatencyMeasured(int probes, long medianMillis, long p90Millis) {
+    }
+
+    @Override
+    public void projection(int total, int[] parallelism, double[] rates, long[][] seconds) {
+    }
+
+    @Override
+    public void info(String msg, Object... args) {
+    }
+
+    @Override
+    public void warn(String msg, Object... args) {
+    }
+
+    @Override
+    public void error(String msg) {
+    }
+
+    @Override
+    public void error(String msg, Exception e) {
+    }
+
+    @Override
+    public void interrupted() {
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public void stopped(StopReason reason) {
+    }
+}
@@ -0,0 +1,90 @@
+package com.expium.massdelete.remover;
+
+import com.google.common.base.Charsets;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Calendar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * Copyright 2015-2016 Expium LLC
+ * http://expium.com/
+ */
+public class RateScheduleTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void firstMatchingPeriodApplies() throws IOException {
+        RateSchedule schedule = read("# Business hours", "08:00-18:00 2 1", "", "12:00-13:00 50", "18:00-22:00 0");
+        assertRate(schedule, 8, 0, 2);
+        assertEquals(1, schedule.get(time(8, 0)).getParallelism());
+        assertRate(schedule, 12, 30, 2);
+        assertRate(schedule, 17, 59, 2);
+        assertRate(schedule, 18, 0, 0);
+        assertEquals(0, schedule.get(time(18, 0)).getParallelism());
+        assertNull(schedule.get(time(22, 0)));
+        assertNull(schedule.get(time(7, 59)));
+    }
+
+    @Test
+    public void periodPastMidnight() throws IOException {
+        RateSchedule schedule = read("22:00-06:00 100");
+        assertRate(schedule, 23, 0, 100);
+        assertRate(schedule, 0, 0, 100);
+        assertRate(schedule, 5, 59, 100);
+        assertNull(schedule.get(time(6, 0)));
+        assertNull(schedule.get(time(21, 59)));
+    }
+
+    @Test
+    public void sameStartAndEndIsTheWholeDay() throws IOException {
+        for (String line : Arrays.asList("00:00-00:00 5", "09:30-09:30 5", "00:00-24:00 5")) {
+            RateSchedule schedule = read(line);
+            for (int hour = 0; hour < 24; hour++) {
+                assertRate(schedule, hour, 0, 5);
+                assertRate(schedule, hour, 59, 5);
+            }
+        }
+    }
+
+    @Test
+    public void invalidLinesRejected() throws IOException {
+        for (String line : Arrays.asList("08:00-18:00", "08:00 18:00 2", "8-18 2", "08:60-18:00 2", "24:01-01:00 2",
+                "08:00-18:00 -1", "08:00-18:00 2 -1", "08:00-18:00 fast", "08:00-18:00 2 1 1")) {
+            try {
+                read("# Fine", line);
+                fail("Accepted " + line);
+            } catch (IOException e) {
+                assertEquals("Line 2 of " + folder.getRoot().toPath().resolve("schedule.txt")
+                        + " is not \"HH:MM-HH:MM <rate> [<parallelism>]\"", e.getMessage());
+            }
+        }
+    }
+
+    private RateSchedule read(String... lines) throws IOException {
+        Path file = folder.getRoot().toPath().resolve("schedule.txt");
+        Files.write(file, Arrays.asList(lines), Charsets.UTF_8);
+        return RateSchedule.read(file);
+    }
+
+    private static void assertRate(RateSchedule schedule, int hour, int minute, double rate) {
+        assertEquals(hour + ":" + minute, rate, schedule.get(time(hour, minute)).getRate(), 0);
+    }
+
+    private static Calendar time(int hour, int minute) {
+        Calendar time = Calendar.getInstance();
+        time.set(Calendar.HOUR_OF_DAY, hour);
+        time.set(Calendar.MINUTE, minute);
+        return time;
+    }
+}
@@ -0,0 +1,97 @@
+package com.expium.massdelete.remover;
+
+import com.expium.massdelete.Options;
+import com.expium.massdelete.StopReason;
+import com.expium.massdelete.ui.UI;
+import com.google.common.util.concurrent.RateLimiter;
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyInt;
+import static org.mockito.Mockito.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Copyright 2015-2016 Expium LLC
+ * http://expium.com/
+ */
+public class RemovalJobTest {
+    private static final int ISSUES = 10;
+    private static final int PARALLELISM = 2;
+
+    private final JiraClientAdapter client = mock(JiraClientAdapter.class);
+    private final DeleteWorkerPool workers = new DeleteWorkerPool(client, PARALLELISM);
+    private final UI ui = mock(UI.class);
+    private final Options options = new Options();
+    private final RemovalProgress progress = new RemovalProgress();
+    private final AtomicInteger deleting = new AtomicInteger();
+    private final AtomicInteger deleted = new AtomicInteger();
+
+    @After
+    public void tearDown() {
+        workers.close();
+    }
+
+    @Test(timeout = 10_000)
+    public void stopsSubmittingAfterFirstFailure() throws Exception {
+        failFirstDelete();
+        assertEquals(StopReason.ERROR, run());
+        // The failure is seen after a few more issues at most, and the deletions in flight are waited for
+        assertTrue(deleting.get() < ISSUES);
+        assertEquals(deleting.get() - 1, deleted.get());
+        assertEquals(1, progress.getSkipped());
+    }
+
+    @Test(timeout = 10_000)
+    public void skipsFailureWithSkipErrors() throws Exception {
+        failFirstDelete();
+        options.skipErrors = true;
+        assertEquals(StopReason.COMPLETED, run());
+        assertEquals(ISSUES, deleting.get());
+        assertEquals(ISSUES - 1, deleted.get());
+    }
+
+    private void failFirstDelete() throws Exception {
+        options.parallelism = PARALLELISM;
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws InterruptedException {
+                if (deleting.incrementAndGet() == 1) {
+                    throw new IllegalStateException("HTTP 500");
+                }
+                // Slower than failing
+                Thread.sleep(20);
+                deleted.incrementAndGet();
+                return null;
+            }
+        }).when(client).delete(any(IssueRef.class));
+    }
+
+    private StopReason run() throws Exception {
+        List<IssueRef> issues = new ArrayList<>();
+        for (int i = 1; i <= ISSUES; i++) {
+            issues.add(DeleteWorkerPoolTest.issue("TEST-" + i));
+        }
+        when(client.search(anyString(), anyInt(), anyInt())).thenReturn(new KeySearchResult(ISSUES, issues),
+                new KeySearchResult(0, new ArrayList<IssueRef>()));
+
+        Metrics metrics = mock(Metrics.class);
+        DeleteStrategy strategy = new PerIssueDeleteStrategy(ui, workers,
+                new Throttle(RateLimiter.create(1_000), metrics));
+        RemovalJob job = new RemovalJob("test", "project = TEST", progress, ui, options, client,
+                strategy, null, null, metrics);
+        assertTrue(job.search());
+        return job.run();
+    }
+}
@@ -0,0 +1,83 @@
+package com.expium.massdelete.remover;
+
+import com.atlassian.httpclient.api.Response;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Copyright 2015-2016 Expium LLC
+ * http://expium.com/
+ */
+public class RetryPolicyTest {
+    @Test
+    public void retryAfterUsedUpToAMinute() {
+        RetryPolicy policy = new RetryPolicy(3, 1_000, 10);
+        assertEquals(5_000, policy.delayMillis(1, failure(429, "5")));
+        assertEquals(60_000, policy.delayMillis(1, failure(503, "7200")));
+    }
+
+    @Test
+    public void delayGrowsWithoutRetryAfter() {
+        RetryPolicy policy = new RetryPolicy(10, 1_000, 10);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(policy.delayMillis(1, failure(503, null)) <= 1_000);
+            assertTrue(policy.delayMillis(3, failure(503, null)) <= 4_000);
+            assertTrue(policy.delayMillis(20, failure(503, null)) <= 60_000);
+        }
+    }
+
+    @Test
+    public void onlyTransientFailuresRetried() {
+        assertTrue(RetryPolicy.isRetryable(failure(429, null)));
+        assertTrue(RetryPolicy.isRetryable(failure(503, null)));
+        assertTrue(RetryPolicy.isRetryable(new IOException("Connection reset")));
+        assertFalse(RetryPolicy.isRetryable(failure(404, null)));
+        assertFalse(RetryPolicy.isRetryable(failure(500, null)));
+    }
+
+    @Test
+    public void budgetRefilledBySuccesses() {
+        RetryPolicy policy = new RetryPolicy(3, 1_000, 10);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(policy.tryAcquireRetry());
+        }
+        assertFalse(policy.tryAcquireRetry());
+        // A tenth of a retry for each
+        for (int i = 0; i < 15; i++) {
+            policy.succeeded();
+        }
+        assertTrue(policy.tryAcquireRetry());
+        assertFalse(policy.tryAcquireRetry());
+    }
+
+    private static JiraResponseException failure(final int status, final String retryAfter) {
+        Response response = (Response) Proxy.newProxyInstance(Response.class.getClassLoader(),
+                new Class<?>[] { Response.class }, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        switch (method.getName()) {
+                        case "getStatusCode":
+                            return status;
+                        case "getStatusText":
+                            return "Status " + status;
+                        case "getHeader":
+                            return "Retry-After".equals(args[0]) ? retryAfter : null;
+                        case "getEntityStream":
+                            return new ByteArrayInputStream(new byte[0]);
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                        }
+                    }
+                });
+        return new JiraResponseException(response);
+    }
+}
@@ -0,0 +1,136 @@
+package com.expium.massdelete.remover;
+
+import com.expium.massdelete.PagingMode;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.anyInt;
+import static org.mockito.Mockito.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Copyright 2015-2016 Expium LLC
+ * http://expium.com/
+ */
+public class SearchStageTest {
+    private static final int BATCH_SIZE = 10;
+    private static final int TOTAL = 1_000;
+    private static final long QUIET_MILLIS = 300;
+
+    private final JiraClientAdapter client = mock(JiraClientAdapter.class);
+    private final RemovalProgress progress = new RemovalProgress();
+    private final Metrics metrics = mock(Metrics.class);
+    private int searched;
+    private SearchStage stage;
+
+    @Before
+    public void setUp() throws Exception {
+        progress.setRemaining(TOTAL);
+        // Each search finds the next issues
+        when(client.search(anyString(), anyInt(), anyInt())).thenAnswer(new Answer<KeySearchResult>() {
+            @Override
+            public KeySearchResult answer(InvocationOnMock invocation) {
+                return page();
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        stage.stop();
+    }
+
+    @Test(timeout = 10_000)
+    public void searchesOnePageAheadWithPrefetch() throws Exception {
+        start(1);
+        verify(client, timeout(2_000)).search(anyString(), anyInt(), anyInt());
+        Thread.sleep(QUIET_MILLIS);
+        verify(client, times(1)).search(anyString(), anyInt(), anyInt());
+
+        assertEquals("TEST-1", stage.next().getIssues().get(0).getKey());
+        assertEquals("TEST-11", stage.next().getIssues().get(0).getKey());
+    }
+
+    @Test(timeout = 10_000)
+    public void waitsForDeletesWithoutPrefetch() throws Exception {
+        start(0);
+        List<IssueRef> first = stage.next().getIssues();
+        Thread.sleep(QUIET_MILLIS);
+        verify(client, never()).search(anyString(), anyInt(), anyInt());
+
+        for (IssueRef issue : first) {
+            progress.removed(issue.getKey());
+        }
+        verify(client, timeout(2_000)).search(anyString(), anyInt(), anyInt());
+        assertEquals("TEST-11", stage.next().getIssues().get(0).getKey());
+    }
+
+    @Test(timeout = 10_000)
+    public void prefetchedPageDroppedOnStop() throws Exception {
+        start(1);
+        // Searched, and waiting for the first page to be taken to queue the next one
+        verify(client, timeout(2_000)).search(anyString(), anyInt(), anyInt());
+        stage.stop();
+        // Gives up queuing within a poll
+        Thread.sleep(QUIET_MILLIS);
+
+        assertEquals("TEST-1", stage.next().getIssues().get(0).getKey());
+        final AtomicReference<SearchPage> next = new AtomicReference<>();
+        Thread taking = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    next.set(stage.next());
+                } catch (InterruptedException e) {
+                    // Nothing came
+                }
+            }
+        });
+        taking.setDaemon(true);
+        taking.start();
+        taking.join(QUIET_MILLIS);
+        taking.interrupt();
+        assertNull(next.get());
+        verify(client, times(1)).search(anyString(), anyInt(), anyInt());
+    }
+
+    @Test(timeout = 10_000)
+    public void searchesAfterLastIdWithKeyset() throws Exception {
+        stage = new SearchStage(client, "project = TEST ORDER BY rank", PagingMode.ID_ASC, progress, metrics,
+                BATCH_SIZE, 1);
+        stage.start(stage.first());
+        verify(client).search("(project = TEST) ORDER BY id ASC", BATCH_SIZE, 0);
+        verify(client, timeout(2_000)).search("(project = TEST) AND id > 10 ORDER BY id ASC", BATCH_SIZE, 0);
+
+        assertEquals("TEST-1", stage.next().getIssues().get(0).getKey());
+        assertEquals("TEST-11", stage.next().getIssues().get(0).getKey());
+    }
+
+    private void start(int prefetch) throws InterruptedException {
+        stage = new SearchStage(client, "project = TEST", PagingMode.OFFSET, progress, metrics, BATCH_SIZE,
+                prefetch);
+        stage.start(page());
+    }
+
+    private synchronized KeySearchResult page() {
+        List<IssueRef> issues = new ArrayList<>();
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            issues.add(DeleteWorkerPoolTest.issue("TEST-" + (++searched)));
+        }
+        return new KeySearchResult(TOTAL, issues);
+    }
+}
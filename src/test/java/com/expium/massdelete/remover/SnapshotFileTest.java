@@ -0,0 +1,101 @@
+package com.expium.massdelete.remover;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Copyright 2015-2016 Expium LLC
+ * http://expium.com/
+ */
+public class SnapshotFileTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void idsReadBackByBlock() throws IOException {
+        // Small and very large gaps, over several blocks with a partial last one
+        Random random = new Random(42);
+        long[] ids = new long[2500];
+        long id = 10_000;
+        for (int i = 0; i < ids.length; i++) {
+            id += random.nextInt(20) == 0 ? 1L << (20 + random.nextInt(30)) : 1 + random.nextInt(3);
+            ids[i] = id;
+        }
+        Path file = folder.getRoot().toPath().resolve("issues.snapshot");
+        long before = System.currentTimeMillis();
+        SnapshotFile.write(file, ids);
+
+        SnapshotFile snapshot = SnapshotFile.open(file);
+        assertEquals(ids.length, snapshot.getCount());
+        assertTrue(snapshot.getTaken() >= before);
+        assertEquals(3, snapshot.getBlockCount());
+        assertEquals(1024, snapshot.getBlockLength(0));
+        assertEquals(2500 - 2048, snapshot.getBlockLength(2));
+        long[] read = new long[ids.length];
+        int i = 0;
+        for (int block = 0; block < snapshot.getBlockCount(); block++) {
+            for (long value : snapshot.readBlock(block)) {
+                read[i++] = value;
+            }
+        }
+        assertArrayEquals(ids, read);
+        // No file left behind by the atomic replace
+        assertEquals(1, folder.getRoot().list().length);
+    }
+
+    @Test
+    public void blocksReadInAnyOrder() throws IOException {
+        long[] ids = new long[3000];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = i * 7L;
+        }
+        Path file = folder.getRoot().toPath().resolve("issues.snapshot");
+        SnapshotFile.write(file, ids);
+        SnapshotFile snapshot = SnapshotFile.open(file);
+        assertArrayEquals(Arrays.copyOfRange(ids, 2048, 3000), snapshot.readBlock(2));
+        assertArrayEquals(Arrays.copyOfRange(ids, 0, 1024), snapshot.readBlock(0));
+    }
+
+    @Test
+    public void emptySnapshot() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("issues.snapshot");
+        SnapshotFile.write(file, new long[0]);
+        SnapshotFile snapshot = SnapshotFile.open(file);
+        assertEquals(0, snapshot.getCount());
+        assertEquals(0, snapshot.getBlockCount());
+    }
+
+    @Test
+    public void otherFilesRejected() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("other");
+        Files.write(file, new byte[64]);
+        assertNotOpened(file);
+
+        Path snapshot = folder.getRoot().toPath().resolve("issues.snapshot");
+        SnapshotFile.write(snapshot, new long[] { 1, 2, 3 });
+        byte[] truncated = Arrays.copyOf(Files.readAllBytes(snapshot), 40);
+        Files.write(file, truncated);
+        assertNotOpened(file);
+    }
+
+    private static void assertNotOpened(Path file) {
+        try {
+            SnapshotFile.open(file);
+            fail("Opened " + file);
+        } catch (IOException e) {
+            // Expected
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.expium.massdelete.remover;
+
+import com.expium.massdelete.Options;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Copyright 2015-2016 Expium LLC
+ * http://expium.com/
+ */
+public class SnapshotSearchTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void snapshotListsIssuesOfAllPages() throws IOException {
+        Options options = new Options();
+        options.queryBatchSize = 10;
+        options.snapshot = folder.newFile("issues.snapshot");
+        assertTrue(new SnapshotSearch(new QuietListener(), options, new PagingSearcher(2500, false))
+                .run(Collections.singletonList("project = TEST")));
+
+        long[] ids = readAll(SnapshotFile.open(options.snapshot.toPath()));
+        assertEquals(2500, ids.length);
+        for (int i = 0; i < ids.length; i++) {
+            assertEquals(i + 1, ids[i]);
+        }
+    }
+
+    @Test
+    public void subtasksLeftOutWithTheirParents() throws IOException {
+        Options options = new Options();
+        options.queryBatchSize = 4;
+        options.snapshot = folder.newFile("issues.snapshot");
+        // Subtasks 3, 5, 7 and 9 of 2, 4, 6 and 8
+        assertTrue(new SnapshotSearch(new QuietListener(), options, new PagingSearcher(9, true))
+                .run(Arrays.asList("project = TEST", "project = TEST")));
+
+        assertArrayEquals(new long[] { 1, 2, 4, 6, 8 }, readAll(SnapshotFile.open(options.snapshot.toPath())));
+    }
+
+    private static long[] readAll(SnapshotFile snapshot) {
+        long[] ids = new long[(int) snapshot.getCount()];
+        int i = 0;
+        for (int block = 0; block < snapshot.getBlockCount(); block++) {
+            for (long id : snapshot.readBlock(block)) {
+                ids[i++] = id;
+            }
+        }
+        return ids;
+    }
+}
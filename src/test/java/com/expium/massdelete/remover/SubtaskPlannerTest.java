@@ -0,0 +1,94 @@
+package com.expium.massdelete.remover;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Copyright 2015-2016 Expium LLC
+ * http://expium.com/
+ */
+public class SubtaskPlannerTest {
+    private static final IssueRef PARENT = issue(1, 0);
+    private static final IssueRef OTHER = issue(2, 0);
+    private static final IssueRef SUBTASK = issue(3, 1);
+    private static final IssueRef SUBTASK_2 = issue(4, 1);
+    private static final IssueRef ORPHAN = issue(5, 99);
+
+    private final SubtaskPlanner planner = new SubtaskPlanner();
+    private final Recorder listener = new Recorder();
+    private final List<IssueRef> alreadyRemoved = new ArrayList<>();
+
+    @Test
+    public void parentsFirstAndSubtasksOfThemLeftOut() {
+        List<IssueRef> planned = planner.plan(Arrays.asList(SUBTASK, ORPHAN, PARENT, SUBTASK_2, OTHER), listener,
+                alreadyRemoved);
+        assertEquals(Arrays.asList(PARENT, OTHER, ORPHAN), planned);
+        assertEquals(0, alreadyRemoved.size());
+
+        planner.removed(PARENT);
+        assertEquals(Arrays.asList("TEST-3", "TEST-4"), listener.removed);
+    }
+
+    @Test
+    public void subtasksFailWithTheirParent() {
+        planner.plan(Arrays.asList(PARENT, SUBTASK, SUBTASK_2), listener, alreadyRemoved);
+        planner.failed(PARENT);
+        assertEquals(Arrays.asList("TEST-3", "TEST-4"), listener.failed);
+        assertEquals(0, listener.removed.size());
+
+        // Tried again on their own in the next page
+        assertEquals(Arrays.asList(SUBTASK), planner.plan(Arrays.asList(SUBTASK), listener, alreadyRemoved));
+    }
+
+    @Test
+    public void subtasksOfRemovedParentReportedByCaller() {
+        planner.plan(Arrays.asList(PARENT), listener, alreadyRemoved);
+        planner.removed(PARENT);
+        List<IssueRef> planned = planner.plan(Arrays.asList(SUBTASK, OTHER), listener, alreadyRemoved);
+        assertEquals(Arrays.asList(OTHER), planned);
+        assertEquals(Arrays.asList(SUBTASK), alreadyRemoved);
+    }
+
+    @Test
+    public void abandonedParentForgetsItsSubtasks() {
+        planner.plan(Arrays.asList(PARENT, SUBTASK, SUBTASK_2), listener, alreadyRemoved);
+        assertEquals(2, planner.abandon(PARENT));
+        planner.removed(PARENT);
+        assertEquals(0, listener.removed.size());
+        assertEquals(0, planner.abandon(SUBTASK));
+    }
+
+    private static IssueRef issue(long id, long parentId) {
+        return new IssueRef(id, "TEST-" + id, null, parentId, null);
+    }
+
+    private static class Recorder implements DeleteStrategy.Listener {
+        final List<String> removed = new ArrayList<>();
+        final List<String> failed = new ArrayList<>();
+
+        @Override
+        public boolean deleting(IssueRef issue) {
+            return true;
+        }
+
+        @Override
+        public boolean isStopping() {
+            return false;
+        }
+
+        @Override
+        public void removed(IssueRef issue) {
+            removed.add(issue.getKey());
+        }
+
+        @Override
+        public void failed(IssueRef issue, Exception e) {
+            failed.add(issue.getKey());
+        }
+    }
+}